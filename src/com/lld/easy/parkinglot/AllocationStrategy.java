@@ -0,0 +1,9 @@
+package com.lld.easy.parkinglot;
+
+// Decides where a vehicle parks. Implementations only choose levels and spot types; claiming
+// a spot and keeping the capacity indexes current is done by ParkingLot.tryPark.
+interface AllocationStrategy {
+    // Returns the claimed spot as a ParkingLot spot id, or NO_SPOT when no spot the vehicle
+    // fits is free.
+    long allocate ( ParkingLot lot , Vehicle vehicle , int gate );
+}
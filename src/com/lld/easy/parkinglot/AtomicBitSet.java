@@ -0,0 +1,66 @@
+package com.lld.easy.parkinglot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-size bitset whose bits can be set and cleared concurrently without a lock.
+class AtomicBitSet {
+    private final AtomicLongArray words;
+    private final int size;
+
+    public AtomicBitSet ( int size ) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    // Returns false if the bit was already set.
+    public boolean set ( int index ) {
+        long bit = 1L << index;
+        int word = index >>> 6;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word , current , current | bit));
+        return true;
+    }
+
+    // Returns false if the bit was already clear.
+    public boolean clear ( int index ) {
+        long bit = 1L << index;
+        int word = index >>> 6;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & bit) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word , current , current & ~bit));
+        return true;
+    }
+
+    public boolean get ( int index ) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    // First set bit at or after from, or -1.
+    public int nextSetBit ( int from ) {
+        if (from >= size) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long bits = words.get(word) & (-1L << from);
+        while (bits == 0) {
+            if (++word >= words.length()) {
+                return -1;
+            }
+            bits = words.get(word);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public int size () {
+        return size;
+    }
+}
@@ -0,0 +1,5 @@
+package com.lld.easy.parkinglot;
+
+interface AvailabilityListener {
+    void onChange ( AvailabilitySnapshot snapshot );
+}
@@ -0,0 +1,82 @@
+package com.lld.easy.parkinglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Pushes availability snapshots to subscribers from its own thread. Gates only raise a flag;
+// any number of changes that happen while listeners are being notified are coalesced into the
+// next snapshot, so a slow display board never slows a gate down. Every snapshot, a new
+// subscriber's first one included, is delivered from that one thread, so a listener never
+// sees an older snapshot after a newer one.
+class AvailabilityPublisher implements Runnable {
+    private final Supplier<AvailabilitySnapshot> snapshots;
+    private final Set<AvailabilityListener> listeners = new CopyOnWriteArraySet<>();
+    private final Queue<AvailabilityListener> joining = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean changed = new AtomicBoolean();
+    private final LongAdder failures = new LongAdder();
+    private volatile Thread thread;
+
+    public AvailabilityPublisher ( Supplier<AvailabilitySnapshot> snapshots ) {
+        this.snapshots = snapshots;
+    }
+
+    public synchronized void subscribe ( AvailabilityListener listener ) {
+        joining.add(listener);
+        if (thread == null) {
+            thread = new Thread(this , "availability-publisher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    public void unsubscribe ( AvailabilityListener listener ) {
+        joining.remove(listener);
+        listeners.remove(listener);
+    }
+
+    public void markChanged () {
+        if (!listeners.isEmpty() && changed.compareAndSet(false , true)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Listeners that threw, counted rather than logged; a failing listener stays subscribed.
+    public long getFailures () {
+        return failures.sum();
+    }
+
+    @Override
+    public void run () {
+        while (true) {
+            while (!changed.get() && joining.isEmpty()) {
+                LockSupport.park(this);
+            }
+            boolean all = changed.getAndSet(false);
+            // Newcomers join before the snapshot is taken, so a change made after it still
+            // raises the flag and reaches them in the next round.
+            List<AvailabilityListener> newcomers = new ArrayList<>();
+            AvailabilityListener newcomer;
+            while ((newcomer = joining.poll()) != null) {
+                newcomers.add(newcomer);
+                listeners.add(newcomer);
+            }
+            AvailabilitySnapshot snapshot = snapshots.get();
+            for (AvailabilityListener listener : all ? listeners : newcomers) {
+                try {
+                    listener.onChange(snapshot);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                }
+            }
+        }
+    }
+}
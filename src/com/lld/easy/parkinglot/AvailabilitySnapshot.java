@@ -0,0 +1,56 @@
+package com.lld.easy.parkinglot;
+
+// Free and total spots per level and spot type at one moment, for display boards and apps.
+// Counts are read without locks, so a park or exit in flight may be reflected in one level's
+// counts and not yet in another's.
+class AvailabilitySnapshot {
+    private final int[][] free;
+    private final int[][] capacity;
+    private final long version;
+    private final long takenAt;
+
+    public AvailabilitySnapshot ( int[][] free , int[][] capacity , long version ) {
+        this.free = free;
+        this.capacity = capacity;
+        this.version = version;
+        this.takenAt = System.currentTimeMillis();
+    }
+
+    public int getFree ( int level , VehicleType spotType ) {
+        return free[level][spotType.ordinal()];
+    }
+
+    public int getCapacity ( int level , VehicleType spotType ) {
+        return capacity[level][spotType.ordinal()];
+    }
+
+    public int getTotalFree ( VehicleType spotType ) {
+        int total = 0;
+        for (int[] level : free) {
+            total += level[spotType.ordinal()];
+        }
+        return total;
+    }
+
+    // Free spots a vehicle of this type could use, counting larger spots it also fits.
+    public int getTotalFreeFor ( VehicleType vehicleType ) {
+        int total = 0;
+        for (VehicleType spotType : vehicleType.getFittingSpotTypes()) {
+            total += getTotalFree(spotType);
+        }
+        return total;
+    }
+
+    public int getLevelCount () {
+        return free.length;
+    }
+
+    // Number of parks and exits the garage had processed when the snapshot was taken.
+    public long getVersion () {
+        return version;
+    }
+
+    public long getTakenAt () {
+        return takenAt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.lld.easy.parkinglot;
+
+// Uses the smallest spot size the vehicle fits anywhere in the garage before moving up a
+// size, so large spots stay free for the vehicles that need them.
+class BestFitStrategy implements AllocationStrategy {
+    @Override
+    public long allocate ( ParkingLot lot , Vehicle vehicle , int gate ) {
+        int levels = lot.getLevelCount();
+        int start = Math.floorMod(gate , levels);
+        for (VehicleType spotType : vehicle.getType().getFittingSpotTypes()) {
+            for (int round = 0 ; round < 2 ; round++) {
+                for (int n = 0 ; n < levels ; n++) {
+                    int level = (start + n) % levels;
+                    if (lot.mayHaveCapacity(level , spotType)) {
+                        long spot = lot.tryPark(level , vehicle , spotType , round == 1);
+                        if (spot != ParkingLot.NO_SPOT) {
+                            return spot;
+                        }
+                    }
+                }
+            }
+        }
+        return ParkingLot.NO_SPOT;
+    }
+}
@@ -0,0 +1,20 @@
+package com.lld.easy.parkinglot;
+
+// Fills the lowest level before opening the next one, using the best-fitting spot size on
+// each level, so upper levels can be closed off while the garage is quiet.
+class FillLevelFirstStrategy implements AllocationStrategy {
+    @Override
+    public long allocate ( ParkingLot lot , Vehicle vehicle , int gate ) {
+        for (int level = 0 ; level < lot.getLevelCount() ; level++) {
+            for (VehicleType spotType : vehicle.getType().getFittingSpotTypes()) {
+                if (lot.mayHaveCapacity(level , spotType)) {
+                    long spot = lot.tryPark(level , vehicle , spotType , true);
+                    if (spot != ParkingLot.NO_SPOT) {
+                        return spot;
+                    }
+                }
+            }
+        }
+        return ParkingLot.NO_SPOT;
+    }
+}
@@ -0,0 +1,80 @@
+package com.lld.easy.parkinglot;
+
+// Two-level bitset of free positions. A bit in summary marks a non-empty word in words, so
+// finding the next free position skips 4096 occupied positions per summary word checked.
+class FreeSpotIndex {
+    private final long[] words;
+    private final long[] summary;
+    private final int size;
+    private int count;
+
+    public FreeSpotIndex ( int size ) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+        this.summary = new long[(words.length + 63) >>> 6];
+    }
+
+    public void set ( int index ) {
+        int word = index >>> 6;
+        long before = words[word];
+        words[word] = before | (1L << index);
+        if (before != words[word]) {
+            count++;
+            summary[word >>> 6] |= 1L << word;
+        }
+    }
+
+    public void clear ( int index ) {
+        int word = index >>> 6;
+        long before = words[word];
+        words[word] = before & ~(1L << index);
+        if (before != words[word]) {
+            count--;
+            if (words[word] == 0) {
+                summary[word >>> 6] &= ~(1L << word);
+            }
+        }
+    }
+
+    public boolean get ( int index ) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // First free position at or after from, or -1.
+    public int nextSetBit ( int from ) {
+        if (from >= size) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long bits = words[word] & (-1L << from);
+        if (bits != 0) {
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        int next = word + 1;
+        if (next >= words.length) {
+            return -1;
+        }
+        int group = next >>> 6;
+        long candidates = summary[group] & (-1L << next);
+        while (candidates == 0) {
+            if (++group >= summary.length) {
+                return -1;
+            }
+            candidates = summary[group];
+        }
+        int nonEmpty = (group << 6) + Long.numberOfTrailingZeros(candidates);
+        return (nonEmpty << 6) + Long.numberOfTrailingZeros(words[nonEmpty]);
+    }
+
+    public int count () {
+        return count;
+    }
+
+    public boolean isEmpty () {
+        return count == 0;
+    }
+
+    public int size () {
+        return size;
+    }
+}
@@ -0,0 +1,53 @@
+package com.lld.easy.parkinglot;
+
+// A parking lot registered with the GarageRegistry, with its location and owning shard.
+class Garage {
+    private final String id;
+    private final double latitude;
+    private final double longitude;
+    private final ParkingLot lot;
+    private final int shard;
+
+    public Garage ( String id , double latitude , double longitude , ParkingLot lot , int shard ) {
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.lot = lot;
+        this.shard = shard;
+    }
+
+    // Great-circle distance in kilometres.
+    public double distanceTo ( double latitude , double longitude ) {
+        double dLat = Math.toRadians(latitude - this.latitude);
+        double dLon = Math.toRadians(longitude - this.longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(this.latitude)) * Math.cos(Math.toRadians(latitude))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6371 * 2 * Math.atan2(Math.sqrt(a) , Math.sqrt(1 - a));
+    }
+
+    public String getId () {
+        return id;
+    }
+
+    public double getLatitude () {
+        return latitude;
+    }
+
+    public double getLongitude () {
+        return longitude;
+    }
+
+    public AvailabilitySnapshot getAvailability () {
+        return lot.snapshot();
+    }
+
+    // Package-private: only the registry mutates a lot, from the garage's shard thread.
+    ParkingLot getLot () {
+        return lot;
+    }
+
+    public int getShard () {
+        return shard;
+    }
+}
@@ -0,0 +1,144 @@
+package com.lld.easy.parkinglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// All garages in one process, keyed by garage ID. Garages are spread over a fixed number of
+// shards, each a single-threaded event loop; every park and exit for a garage runs on its
+// shard's thread, so one garage's traffic is applied in order by a single writer while
+// different shards run in parallel. A journaled park never holds the shard thread for its fsync:
+// the returned future completes from the journal once the record is durable. Cross-garage
+// queries only read the lock-free availability snapshots, so they fan out on a separate query
+// pool and never queue behind writes.
+class GarageRegistry {
+    private final Map<String, Garage> garages = new ConcurrentHashMap<>();
+    private final List<List<Garage>> garagesByShard = new ArrayList<>();
+    private final List<ExecutorService> shards = new ArrayList<>();
+    private final ExecutorService queries;
+
+    public GarageRegistry ( int numOfShards ) {
+        for (int i = 0 ; i < numOfShards ; i++) {
+            int shard = i;
+            garagesByShard.add(new CopyOnWriteArrayList<>());
+            shards.add(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable , "garage-shard-" + shard);
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        AtomicInteger queryThreads = new AtomicInteger();
+        queries = Executors.newFixedThreadPool(numOfShards , runnable -> {
+            Thread thread = new Thread(runnable , "garage-query-" + queryThreads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void register ( String garageId , double latitude , double longitude , ParkingLot lot ) {
+        int shard = Math.floorMod(garageId.hashCode() , shards.size());
+        Garage garage = new Garage(garageId , latitude , longitude , lot , shard);
+        if (garages.putIfAbsent(garageId , garage) != null) {
+            throw new IllegalArgumentException("Garage " + garageId + " is already registered");
+        }
+        garagesByShard.get(shard).add(garage);
+    }
+
+    // Read-only views of a garage; parks and exits go through park and unpark so they stay on
+    // the garage's shard thread.
+    public AvailabilitySnapshot getAvailability ( String garageId ) {
+        return getGarage(garageId).getAvailability();
+    }
+
+    public ParkingTicket findVehicle ( String garageId , String licensePlate ) {
+        return getGarage(garageId).getLot().findVehicle(licensePlate);
+    }
+
+    public CompletableFuture<ParkingTicket> park ( String garageId , Vehicle vehicle , int gate ) {
+        Garage garage = getGarage(garageId);
+        return CompletableFuture.supplyAsync(() -> garage.getLot().parkAsync(vehicle , gate) , shards.get(garage.getShard()))
+                                .thenCompose(parked -> parked);
+    }
+
+    public CompletableFuture<Vehicle> unpark ( String garageId , ParkingTicket ticket ) {
+        Garage garage = getGarage(garageId);
+        return CompletableFuture.supplyAsync(() -> garage.getLot().unparkAsync(ticket) , shards.get(garage.getShard()))
+                                .thenCompose(unparked -> unparked);
+    }
+
+    // Nearest garage with a free spot the vehicle type fits. Each shard's garages are searched
+    // in parallel on the query pool; the closest of those candidates wins.
+    public CompletableFuture<Optional<Garage>> findNearestWithCapacity ( double latitude , double longitude ,
+                                                                         VehicleType vehicleType ) {
+        List<CompletableFuture<Optional<Garage>>> candidates = new ArrayList<>();
+        for (int shard = 0 ; shard < shards.size() ; shard++) {
+            List<Garage> owned = garagesByShard.get(shard);
+            candidates.add(CompletableFuture.supplyAsync(() -> nearest(owned , latitude , longitude , vehicleType) ,
+                                                         queries));
+        }
+        return CompletableFuture.allOf(candidates.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Garage nearest = null;
+            for (CompletableFuture<Optional<Garage>> candidate : candidates) {
+                Garage garage = candidate.join().orElse(null);
+                if (garage != null && (nearest == null || garage.distanceTo(latitude , longitude)
+                        < nearest.distanceTo(latitude , longitude))) {
+                    nearest = garage;
+                }
+            }
+            return Optional.ofNullable(nearest);
+        });
+    }
+
+    private static Optional<Garage> nearest ( List<Garage> garages , double latitude , double longitude ,
+                                              VehicleType vehicleType ) {
+        Garage nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (Garage garage : garages) {
+            double distance = garage.distanceTo(latitude , longitude);
+            if (distance < nearestDistance && garage.getAvailability().getTotalFreeFor(vehicleType) > 0) {
+                nearest = garage;
+                nearestDistance = distance;
+            }
+        }
+        return Optional.ofNullable(nearest);
+    }
+
+    // Total free spots for the vehicle type across every garage, counted shard by shard in parallel.
+    public CompletableFuture<Integer> countFree ( VehicleType vehicleType ) {
+        List<CompletableFuture<Integer>> counts = new ArrayList<>();
+        for (int shard = 0 ; shard < shards.size() ; shard++) {
+            List<Garage> owned = garagesByShard.get(shard);
+            counts.add(CompletableFuture.supplyAsync(() -> {
+                int free = 0;
+                for (Garage garage : owned) {
+                    free += garage.getAvailability().getTotalFreeFor(vehicleType);
+                }
+                return free;
+            } , queries));
+        }
+        return CompletableFuture.allOf(counts.toArray(new CompletableFuture<?>[0]))
+                                .thenApply(done -> counts.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    private Garage getGarage ( String garageId ) {
+        Garage garage = garages.get(garageId);
+        if (garage == null) {
+            throw new IllegalArgumentException("Unknown garage " + garageId);
+        }
+        return garage;
+    }
+
+    public void close () {
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        queries.shutdown();
+    }
+}
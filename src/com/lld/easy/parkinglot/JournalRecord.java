@@ -0,0 +1,53 @@
+package com.lld.easy.parkinglot;
+
+// One park or unpark in the occupancy journal. Snapshots reuse it to describe an occupied spot.
+class JournalRecord {
+    static final byte PARK = 1;
+    static final byte UNPARK = 2;
+
+    private final long sequence;
+    private final byte operation;
+    private final int level;
+    private final int spot;
+    private final VehicleType vehicleType;
+    private final String licensePlate;
+
+    public JournalRecord ( long sequence , byte operation , int level , int spot , VehicleType vehicleType ,
+                           String licensePlate ) {
+        this.sequence = sequence;
+        this.operation = operation;
+        this.level = level;
+        this.spot = spot;
+        this.vehicleType = vehicleType;
+        this.licensePlate = licensePlate;
+    }
+
+    public long getSequence () {
+        return sequence;
+    }
+
+    public byte getOperation () {
+        return operation;
+    }
+
+    public int getLevel () {
+        return level;
+    }
+
+    public int getSpot () {
+        return spot;
+    }
+
+    public VehicleType getVehicleType () {
+        return vehicleType;
+    }
+
+    public String getLicensePlate () {
+        return licensePlate;
+    }
+
+    // Identifies the spot across levels.
+    public long getSpotKey () {
+        return ((long) level << 32) | (spot & 0xFFFFFFFFL);
+    }
+}
@@ -1,29 +1,198 @@
 package com.lld.easy.parkinglot;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+// Spots are stored as parallel arrays indexed by spot number rather than one object per spot,
+// so a level of any size is a handful of arrays and parking or leaving never allocates.
 class Level {
-    protected final List<ParkingSpot> spots;
+    private final int levelIndex;
+    private final byte[] spotTypes; // VehicleType ordinal of each spot
+    private final AtomicBitSet occupied;
+    private final int[] vehicleHandles; // Handle in vehicles, valid while the spot is occupied
+    private final VehicleTable vehicles;
+    // Per-spot seqlock stamps: odd while the spot's handle is being written or released, so a
+    // lock-free reader can tell that the handle it read was reused underneath it.
+    private final AtomicIntegerArray spotVersions;
+    // Free spots per spot type. Spot indexes grow with the distance from the entrance, so the
+    // lowest free index of a type is its nearest free spot. The lock guards the free index and
+    // the vehicle table; occupied can be read without it.
+    private final Map<VehicleType, FreeSpotIndex> freeSpots = new EnumMap<>(VehicleType.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicIntegerArray freeCounts = new AtomicIntegerArray(VehicleType.values().length);
+    private final int[] capacity = new int[VehicleType.values().length];
 
-    public Level ( int numOfSpots ) {
-        spots = new ArrayList<>(numOfSpots);
-        for (int i = 0 ; i < numOfSpots ; i++) {
-            spots.add(new ParkingSpot(VehicleType.CAR)); // Assuming all spots are for cars
+    public Level ( int levelIndex , int numOfSpots ) {
+        this(levelIndex , layout(0 , numOfSpots , 0)); // All spots are for cars
+    }
+
+    // layout[i] is the type of spot i, nearest to the entrance first.
+    public Level ( int levelIndex , VehicleType[] layout ) {
+        this.levelIndex = levelIndex;
+        spotTypes = new byte[layout.length];
+        occupied = new AtomicBitSet(layout.length);
+        vehicleHandles = new int[layout.length];
+        vehicles = new VehicleTable(layout.length);
+        spotVersions = new AtomicIntegerArray(layout.length);
+        for (VehicleType type : VehicleType.values()) {
+            freeSpots.put(type , new FreeSpotIndex(layout.length));
+        }
+        for (int i = 0 ; i < layout.length ; i++) {
+            spotTypes[i] = (byte) layout[i].ordinal();
+            freeSpots.get(layout[i]).set(i);
+            freeCounts.incrementAndGet(layout[i].ordinal());
+            capacity[layout[i].ordinal()]++;
+        }
+    }
+
+    // Motorcycle bays nearest the entrance, then cars, then trucks.
+    public static VehicleType[] layout ( int motorcycles , int cars , int trucks ) {
+        VehicleType[] layout = new VehicleType[motorcycles + cars + trucks];
+        Arrays.fill(layout , 0 , motorcycles , VehicleType.MOTORCYCLE);
+        Arrays.fill(layout , motorcycles , motorcycles + cars , VehicleType.CAR);
+        Arrays.fill(layout , motorcycles + cars , layout.length , VehicleType.TRUCK);
+        return layout;
+    }
+
+    public int parkVehicle ( Vehicle vehicle ) {
+        return parkVehicle(vehicle , true);
+    }
+
+    // Nearest free spot the vehicle fits, of any size. With wait == false a level busy with
+    // another gate is skipped instead of waited on. Returns the spot index, or -1.
+    public int parkVehicle ( Vehicle vehicle , boolean wait ) {
+        return park(vehicle , null , wait);
+    }
+
+    // Nearest free spot of exactly spotType.
+    public int parkVehicle ( Vehicle vehicle , VehicleType spotType , boolean wait ) {
+        if (!vehicle.getType().fitsIn(spotType)) {
+            throw new IllegalArgumentException(vehicle.getType() + " does not fit a " + spotType + " spot");
+        }
+        return park(vehicle , spotType , wait);
+    }
+
+    private int park ( Vehicle vehicle , VehicleType spotType , boolean wait ) {
+        if (wait) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return -1; // The level is busy
+        }
+        try {
+            int nearest = -1;
+            VehicleType nearestType = spotType;
+            if (spotType != null) {
+                nearest = freeSpots.get(spotType).nextSetBit(0);
+            } else {
+                for (VehicleType type : vehicle.getType().getFittingSpotTypes()) {
+                    int index = freeSpots.get(type).nextSetBit(0);
+                    if (index >= 0 && (nearest < 0 || index < nearest)) {
+                        nearest = index;
+                        nearestType = type;
+                    }
+                }
+            }
+            if (nearest >= 0) {
+                freeSpots.get(nearestType).clear(nearest);
+                freeCounts.decrementAndGet(nearestType.ordinal());
+                fill(nearest , vehicle);
+            }
+            return nearest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held on a spot just taken out of the free index. The handle is
+    // written before the occupied bit, so a reader that sees the bit also sees the handle.
+    private void fill ( int index , Vehicle vehicle ) {
+        spotVersions.incrementAndGet(index);
+        vehicleHandles[index] = vehicles.acquire(vehicle);
+        occupied.set(index);
+        spotVersions.incrementAndGet(index);
+    }
+
+    // Puts the vehicle back in a specific spot; used when restoring occupancy after a restart.
+    public void occupy ( int index , Vehicle vehicle ) {
+        lock.lock();
+        try {
+            FreeSpotIndex free = freeSpots.get(getSpotType(index));
+            if (!free.get(index)) {
+                throw new IllegalStateException("Spot " + index + " is already occupied");
+            }
+            free.clear(index);
+            freeCounts.decrementAndGet(spotTypes[index]);
+            fill(index , vehicle);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns false if the spot was already free.
+    public boolean removeVehicle ( int index ) {
+        if (!occupied.clear(index)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            spotVersions.incrementAndGet(index);
+            vehicles.release(vehicleHandles[index]);
+            spotVersions.incrementAndGet(index);
+            freeSpots.get(getSpotType(index)).set(index);
+            freeCounts.incrementAndGet(spotTypes[index]);
+        } finally {
+            lock.unlock();
         }
+        return true;
+    }
+
+    // Lock-free; may be momentarily stale while another gate is parking or leaving.
+    public boolean hasCapacity ( VehicleType spotType ) {
+        return freeCounts.get(spotType.ordinal()) > 0;
     }
 
-    public synchronized ParkingSpot parkVehicle ( Vehicle vehicle ) {
-        for (ParkingSpot spot : spots) {
-            if (spot.isAvailable() && spot.getType() == vehicle.getType()) {
-                spot.parkVehicle(vehicle);
-                return spot;
+    public int getFreeCount ( VehicleType spotType ) {
+        return freeCounts.get(spotType.ordinal());
+    }
+
+    public int getCapacity ( VehicleType spotType ) {
+        return capacity[spotType.ordinal()];
+    }
+
+    public boolean isOccupied ( int index ) {
+        return occupied.get(index);
+    }
+
+    // Lock-free, so the vehicle may already be leaving by the time the caller looks at it, but
+    // it is never another vehicle: the read is retried if the spot's stamp moved meanwhile.
+    public Vehicle getVehicle ( int index ) {
+        while (true) {
+            int version = spotVersions.get(index);
+            if ((version & 1) == 0) {
+                Vehicle vehicle = occupied.get(index) ? vehicles.get(vehicleHandles[index]) : null;
+                VarHandle.acquireFence(); // Keep the reads above ahead of the re-check
+                if (spotVersions.get(index) == version) {
+                    return vehicle;
+                }
             }
+            Thread.onSpinWait();
         }
-        return null; // No available spot
     }
 
-    public synchronized void removeVehicle ( ParkingSpot spot ) {
-        spot.removeVehicle();
+    public VehicleType getSpotType ( int index ) {
+        return VehicleType.ofOrdinal(spotTypes[index]);
+    }
+
+    public int getLevelIndex () {
+        return levelIndex;
+    }
+
+    // A view of the spot for callers outside the hot path; the level keeps no spot objects.
+    public ParkingSpot getSpot ( int index ) {
+        return new ParkingSpot(this , index);
     }
 }
@@ -0,0 +1,24 @@
+package com.lld.easy.parkinglot;
+
+// Each gate enters at its own level (gate modulo the level count) and takes the nearest free
+// spot the vehicle fits, of any size. Levels busy with another gate are skipped on the first
+// round and only waited on in the second, so concurrent gates spread out.
+class NearestToEntranceStrategy implements AllocationStrategy {
+    @Override
+    public long allocate ( ParkingLot lot , Vehicle vehicle , int gate ) {
+        int levels = lot.getLevelCount();
+        int start = Math.floorMod(gate , levels);
+        for (int round = 0 ; round < 2 ; round++) {
+            for (int n = 0 ; n < levels ; n++) {
+                int level = (start + n) % levels;
+                if (lot.mayFit(level , vehicle.getType())) {
+                    long spot = lot.tryPark(level , vehicle , null , round == 1);
+                    if (spot != ParkingLot.NO_SPOT) {
+                        return spot;
+                    }
+                }
+            }
+        }
+        return ParkingLot.NO_SPOT;
+    }
+}
@@ -0,0 +1,397 @@
+package com.lld.easy.parkinglot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only journal of parks and unparks with periodic snapshots.
+//
+// Gates hand records to a single writer thread, which writes everything queued since its last
+// pass with one write and one fsync (group commit), so a gate waits for at most one fsync no
+// matter how many gates are busy. A caller that must not block asks for a future instead; the
+// writer completes it once the record is on disk. The writer also keeps the occupancy the journal describes;
+// every snapshotEveryRecords records it writes that occupancy as a snapshot, starts a new
+// journal file and deletes the files the snapshot covers, so recovery only ever replays a
+// snapshot plus a bounded tail.
+//
+// Journal record: [int bodyLength][int crc32][long sequence][byte operation][int level]
+//                 [int spot][byte vehicleType][short plateLength][plate]
+// A record that is cut short or fails its checksum marks the end of the journal.
+class ParkingJournal implements Runnable {
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String SNAPSHOT = "snapshot";
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 8 + 1 + 4 + 4 + 1 + 2;
+
+    private final Path dir;
+    private final int snapshotEveryRecords;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queued = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private List<JournalRecord> pending = new ArrayList<>();
+    private long nextSequence = 1;
+    private long durableSequence;
+    private IOException failure;
+    private final TreeMap<Long, CompletableFuture<Void>> waiters = new TreeMap<>();
+    private boolean closed;
+
+    // Owned by the writer thread once recovery is done.
+    private final Map<Long, JournalRecord> occupancy = new HashMap<>();
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private int recordsSinceSnapshot;
+    private Thread writer;
+
+    public ParkingJournal ( Path dir , int snapshotEveryRecords ) {
+        this.dir = dir;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+    }
+
+    // Loads the last snapshot, replays the journal after it and starts the writer. Returns the
+    // occupied spots; must be called once, before any record is logged.
+    public Collection<JournalRecord> recover () {
+        try {
+            Files.createDirectories(dir);
+            long snapshotSequence = readSnapshot();
+            long lastSequence = snapshotSequence;
+            Path last = null;
+            for (Path file : journalFiles().values()) {
+                lastSequence = Math.max(lastSequence , replay(file , snapshotSequence));
+                last = file;
+            }
+            nextSequence = lastSequence + 1;
+            durableSequence = lastSequence;
+            if (last == null) {
+                last = journalFile(nextSequence);
+            }
+            channel = FileChannel.open(last , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                                       StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to recover parking journal " + dir , e);
+        }
+        writer = new Thread(this , "parking-journal");
+        writer.setDaemon(true);
+        writer.start();
+        return new ArrayList<>(occupancy.values());
+    }
+
+    public long logPark ( int level , int spot , Vehicle vehicle ) {
+        return log(JournalRecord.PARK , level , spot , vehicle.getType() , vehicle.getLicensePlate());
+    }
+
+    public long logUnpark ( int level , int spot , VehicleType spotType ) {
+        return log(JournalRecord.UNPARK , level , spot , spotType , "");
+    }
+
+    private long log ( byte operation , int level , int spot , VehicleType vehicleType , String licensePlate ) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Parking journal is closed");
+            }
+            // Once a write has failed the lot is read-only: nothing more is accepted until a
+            // restart rebuilds occupancy from what actually reached the disk.
+            if (failure != null) {
+                throw new UncheckedIOException("Parking journal write failed" , failure);
+            }
+            long sequence = nextSequence++;
+            pending.add(new JournalRecord(sequence , operation , level , spot , vehicleType , licensePlate));
+            queued.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until the record with this sequence number is on disk.
+    public void awaitDurable ( long sequence ) {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Parking journal write failed" , failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Completes once the record with this sequence number is on disk, on the writer thread, so
+    // dependent work should stay short or move to its own executor.
+    public CompletableFuture<Void> whenDurable ( long sequence ) {
+        lock.lock();
+        try {
+            if (durableSequence >= sequence) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(new UncheckedIOException("Parking journal write failed" , failure));
+            }
+            return waiters.computeIfAbsent(sequence , key -> new CompletableFuture<>());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run () {
+        while (true) {
+            List<JournalRecord> batch;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    queued.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                write(batch);
+                for (JournalRecord record : batch) {
+                    apply(record);
+                }
+                long lastSequence = batch.get(batch.size() - 1).getSequence();
+                markDurable(lastSequence , null);
+                recordsSinceSnapshot += batch.size();
+                if (recordsSinceSnapshot >= snapshotEveryRecords) {
+                    snapshot(lastSequence);
+                }
+            } catch (IOException e) {
+                markDurable(-1 , e);
+                return;
+            }
+        }
+    }
+
+    // Futures are completed after the lock is released so their callbacks never hold it.
+    private void markDurable ( long sequence , IOException error ) {
+        List<CompletableFuture<Void>> completed;
+        lock.lock();
+        try {
+            if (error != null) {
+                failure = error;
+                completed = new ArrayList<>(waiters.values());
+                waiters.clear();
+            } else {
+                durableSequence = sequence;
+                Map<Long, CompletableFuture<Void>> done = waiters.headMap(sequence , true);
+                completed = new ArrayList<>(done.values());
+                done.clear();
+            }
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<Void> waiter : completed) {
+            if (error != null) {
+                waiter.completeExceptionally(new UncheckedIOException("Parking journal write failed" , error));
+            } else {
+                waiter.complete(null);
+            }
+        }
+    }
+
+    private void write ( List<JournalRecord> batch ) throws IOException {
+        buffer.clear();
+        for (JournalRecord record : batch) {
+            byte[] plate = record.getLicensePlate().getBytes(StandardCharsets.UTF_8);
+            int bodyLength = FIXED_BODY_SIZE + plate.length;
+            if (buffer.remaining() < HEADER_SIZE + bodyLength) {
+                buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2 , buffer.position() + HEADER_SIZE + bodyLength))
+                                   .put(buffer.flip());
+            }
+            int start = buffer.position();
+            buffer.putInt(bodyLength).putInt(0);
+            buffer.putLong(record.getSequence())
+                  .put(record.getOperation())
+                  .putInt(record.getLevel())
+                  .putInt(record.getSpot())
+                  .put((byte) record.getVehicleType().ordinal())
+                  .putShort((short) plate.length)
+                  .put(plate);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array() , start + HEADER_SIZE , bodyLength);
+            buffer.putInt(start + 4 , (int) crc.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private void apply ( JournalRecord record ) {
+        if (record.getOperation() == JournalRecord.PARK) {
+            occupancy.put(record.getSpotKey() , record);
+        } else {
+            occupancy.remove(record.getSpotKey());
+        }
+    }
+
+    // Replays the records after fromSequence and cuts off a torn tail. Returns the last
+    // sequence number found in the file.
+    private long replay ( Path file , long fromSequence ) throws IOException {
+        long lastSequence = 0;
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (data.remaining() >= HEADER_SIZE) {
+            int start = data.position();
+            int bodyLength = data.getInt();
+            int checksum = data.getInt();
+            if (bodyLength < FIXED_BODY_SIZE || bodyLength > data.remaining()) {
+                data.position(start);
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data.array() , data.position() , bodyLength);
+            if ((int) crc.getValue() != checksum) {
+                data.position(start);
+                break;
+            }
+            long sequence = data.getLong();
+            byte operation = data.get();
+            int level = data.getInt();
+            int spot = data.getInt();
+            VehicleType type = VehicleType.values()[data.get()];
+            byte[] plate = new byte[data.getShort()];
+            data.get(plate);
+            lastSequence = sequence;
+            if (sequence > fromSequence) {
+                apply(new JournalRecord(sequence , operation , level , spot , type ,
+                                        new String(plate , StandardCharsets.UTF_8)));
+            }
+        }
+        if (data.hasRemaining()) {
+            try (FileChannel torn = FileChannel.open(file , StandardOpenOption.WRITE)) {
+                torn.truncate(data.position());
+            }
+        }
+        return lastSequence;
+    }
+
+    // Snapshot: [long sequence][int count] then per occupied spot [int level][int spot]
+    // [byte vehicleType][UTF plate], followed by the CRC32 of everything before it.
+    private void snapshot ( long sequence ) throws IOException {
+        Path temp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel file = FileChannel.open(temp , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                                                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(file)) , new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeLong(sequence);
+            out.writeInt(occupancy.size());
+            for (JournalRecord occupant : occupancy.values()) {
+                out.writeInt(occupant.getLevel());
+                out.writeInt(occupant.getSpot());
+                out.writeByte(occupant.getVehicleType().ordinal());
+                out.writeUTF(occupant.getLicensePlate());
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temp , dir.resolve(SNAPSHOT) , StandardCopyOption.REPLACE_EXISTING , StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(journalFile(sequence + 1) , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                                   StandardOpenOption.APPEND);
+        for (Map.Entry<Long, Path> journal : journalFiles().entrySet()) {
+            if (journal.getKey() <= sequence) {
+                Files.delete(journal.getValue());
+            }
+        }
+        recordsSinceSnapshot = 0;
+    }
+
+    private long readSnapshot () throws IOException {
+        Path file = dir.resolve(SNAPSHOT);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)) , new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0 ; i < count ; i++) {
+                int level = in.readInt();
+                int spot = in.readInt();
+                VehicleType type = VehicleType.values()[in.readByte()];
+                String plate = in.readUTF();
+                apply(new JournalRecord(sequence , JournalRecord.PARK , level , spot , type , plate));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readInt() != (int) expected) {
+                throw new IOException("Snapshot " + file + " is corrupt");
+            }
+            return sequence;
+        }
+    }
+
+    // Journal files keyed by the sequence number of their first record.
+    private Map<Long, Path> journalFiles () throws IOException {
+        Map<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir , JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(JOURNAL_PREFIX.length() ,
+                                                        name.length() - JOURNAL_SUFFIX.length())) , file);
+            }
+        }
+        return files;
+    }
+
+    private Path journalFile ( long firstSequence ) {
+        return dir.resolve(String.format("%s%020d%s" , JOURNAL_PREFIX , firstSequence , JOURNAL_SUFFIX));
+    }
+
+    // Waits for everything logged so far to reach disk, then stops the writer.
+    public void close () {
+        lock.lock();
+        try {
+            closed = true;
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close parking journal " + dir , e);
+        }
+    }
+}
@@ -1,42 +1,366 @@
 package com.lld.easy.parkinglot;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 class ParkingLot {
-    private static ParkingLot instance;
+    static final long NO_SPOT = -1;
+
     private final List<Level> levels;
+    // Levels that still have a free spot, per spot type, so full levels are never visited.
+    // Only a hint: a level is always re-checked before its bit is trusted or cleared.
+    private final Map<VehicleType, AtomicBitSet> levelsWithCapacity = new EnumMap<>(VehicleType.class);
+    private final Map<String, ParkingTicket> ticketsByPlate = new ConcurrentHashMap<>();
+    private volatile AllocationStrategy strategy;
+    private final LongAdder changes = new LongAdder();
+    private final AvailabilityPublisher publisher = new AvailabilityPublisher(this::snapshot);
+    private volatile ParkingJournal journal;
+    private volatile boolean journalClosed;
+
+    public ParkingLot ( int numOfLevels , int spotsPerLevel ) {
+        this(Collections.nCopies(numOfLevels , Level.layout(0 , spotsPerLevel , 0)) , new NearestToEntranceStrategy());
+    }
 
-    private ParkingLot ( int numOfLevels , int spotsPerLevel ) {
+    // levelLayouts.get(i)[j] is the type of spot j on level i, nearest to the entrance first.
+    public ParkingLot ( List<VehicleType[]> levelLayouts , AllocationStrategy strategy ) {
+        int numOfLevels = levelLayouts.size();
+        this.strategy = strategy;
         levels = new ArrayList<>(numOfLevels);
         for (int i = 0 ; i < numOfLevels ; i++) {
-            levels.add(new Level(spotsPerLevel));
+            levels.add(new Level(i , levelLayouts.get(i)));
+        }
+        for (VehicleType type : VehicleType.values()) {
+            AtomicBitSet withCapacity = new AtomicBitSet(numOfLevels);
+            for (int i = 0 ; i < numOfLevels ; i++) {
+                if (levels.get(i).hasCapacity(type)) {
+                    withCapacity.set(i);
+                }
+            }
+            levelsWithCapacity.put(type , withCapacity);
+        }
+    }
+
+    public void setAllocationStrategy ( AllocationStrategy strategy ) {
+        this.strategy = strategy;
+    }
+
+    // Restores the occupancy recorded in dir, then journals every park and exit there. Call once,
+    // before the gates open; from then on park and unpark return only once their record is on disk.
+    public synchronized void enableJournal ( Path dir , int snapshotEveryRecords ) {
+        if (journal != null) {
+            throw new IllegalStateException("Journal already enabled");
+        }
+        // Changes made after a close were never recorded, so replaying the old journal over them
+        // would occupy spots that are already taken.
+        if (journalClosed || !ticketsByPlate.isEmpty()) {
+            throw new IllegalStateException("Journal must be enabled before any vehicle parks");
+        }
+        ParkingJournal recovered = new ParkingJournal(dir , snapshotEveryRecords);
+        for (JournalRecord occupant : recovered.recover()) {
+            Vehicle vehicle = Vehicle.create(occupant.getVehicleType() , occupant.getLicensePlate());
+            Level level = levels.get(occupant.getLevel());
+            level.occupy(occupant.getSpot() , vehicle);
+            refreshCapacity(occupant.getLevel() , level.getSpotType(occupant.getSpot()));
+            ticketsByPlate.put(vehicle.getLicensePlate() ,
+                               new ParkingTicket(vehicle , occupant.getLevel() , occupant.getSpot()));
+            changed();
         }
+        journal = recovered;
     }
 
-    public static synchronized ParkingLot getInstance ( int numOfLevels , int spotsPerLevel ) {
-        if (instance == null) {
-            instance = new ParkingLot(numOfLevels , spotsPerLevel);
+    // A journaled lot accepts no further parks or exits once its journal is closed.
+    public synchronized void closeJournal () {
+        if (journal != null) {
+            journalClosed = true;
+            journal.close();
+            journal = null;
         }
-        return instance;
     }
 
-    public synchronized ParkingSpot parkVehicle ( Vehicle vehicle ) {
-        for (Level level : levels) {
-            ParkingSpot spot = level.parkVehicle(vehicle);
-            if (spot != null) {
-                return spot;
+    public ParkingSpot parkVehicle ( Vehicle vehicle ) {
+        return parkVehicle(vehicle , 0);
+    }
+
+    public ParkingSpot parkVehicle ( Vehicle vehicle , int gate ) {
+        ParkingTicket ticket = park(vehicle , gate);
+        return ticket == null ? null : getSpot(ticket);
+    }
+
+    public ParkingTicket park ( Vehicle vehicle ) {
+        return park(vehicle , 0);
+    }
+
+    // Parks the vehicle and indexes its ticket by license plate. Returns null when the garage
+    // has no spot for it; a plate that is already parked is rejected. Without a journal the
+    // ticket and its index entry are the only allocations, and nothing does I/O.
+    public ParkingTicket park ( Vehicle vehicle , int gate ) {
+        checkWritable();
+        long spot = strategy.allocate(this , vehicle , gate);
+        if (spot == NO_SPOT) {
+            return null;
+        }
+        ParkingJournal journal = this.journal;
+        long sequence = logPark(journal , spot , vehicle);
+        ParkingTicket ticket = issue(vehicle , spot , journal);
+        if (journal != null) {
+            try {
+                journal.awaitDurable(sequence);
+            } catch (RuntimeException e) {
+                rollBack(ticket);
+                throw e;
             }
         }
-        return null; // No available spot
+        return ticket;
     }
 
-    public synchronized void removeVehicle ( ParkingSpot spot ) {
-        for (Level level : levels) {
-            if (level.spots.contains(spot)) {
-                level.removeVehicle(spot);
-                break;
+    // Same as park, but never waits for the journal: the future completes once the record is on
+    // disk, so a single-threaded caller can keep serving other vehicles meanwhile.
+    public CompletableFuture<ParkingTicket> parkAsync ( Vehicle vehicle , int gate ) {
+        checkWritable();
+        long spot = strategy.allocate(this , vehicle , gate);
+        if (spot == NO_SPOT) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ParkingJournal journal = this.journal;
+        long sequence = logPark(journal , spot , vehicle);
+        ParkingTicket ticket = issue(vehicle , spot , journal);
+        if (journal == null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        return journal.whenDurable(sequence).whenComplete((done , error) -> {
+            if (error != null) {
+                rollBack(ticket);
             }
+        }).thenApply(done -> ticket);
+    }
+
+    private void checkWritable () {
+        if (journalClosed) {
+            throw new IllegalStateException("Parking journal is closed");
         }
     }
+
+    // A claimed spot whose park record is refused is handed back before the error surfaces.
+    private long logPark ( ParkingJournal journal , long spot , Vehicle vehicle ) {
+        if (journal == null) {
+            return -1;
+        }
+        try {
+            return journal.logPark(levelOf(spot) , indexOf(spot) , vehicle);
+        } catch (RuntimeException e) {
+            free(levelOf(spot) , indexOf(spot));
+            throw e;
+        }
+    }
+
+    // A park whose record never reached the disk is undone, so memory matches what recovery
+    // rebuilds. The journal has failed by then, so the lot takes no further changes.
+    private void rollBack ( ParkingTicket ticket ) {
+        if (ticketsByPlate.remove(ticket.getLicensePlate() , ticket)) {
+            free(ticket.getLevel() , ticket.getSpot());
+        }
+    }
+
+    // The park is journaled before the ticket is visible, so an exit for this vehicle can
+    // never be journaled ahead of it.
+    private ParkingTicket issue ( Vehicle vehicle , long spot , ParkingJournal journal ) {
+        int level = levelOf(spot);
+        int index = indexOf(spot);
+        ParkingTicket ticket = new ParkingTicket(vehicle , level , index);
+        if (ticketsByPlate.putIfAbsent(vehicle.getLicensePlate() , ticket) != null) {
+            try {
+                release(level , index , journal);
+            } catch (RuntimeException e) {
+                free(level , index);
+            }
+            throw new IllegalStateException("Vehicle " + vehicle.getLicensePlate() + " is already parked");
+        }
+        return ticket;
+    }
+
+    // Spots are passed around as a level and index packed into one long, so strategies hand
+    // back their choice without creating an object.
+    static long spotId ( int level , int index ) {
+        return (long) level << 32 | index;
+    }
+
+    static int levelOf ( long spotId ) {
+        return (int) (spotId >>> 32);
+    }
+
+    static int indexOf ( long spotId ) {
+        return (int) spotId;
+    }
+
+    int getLevelCount () {
+        return levels.size();
+    }
+
+    // False only when the level is known to have no free spot of spotType.
+    boolean mayHaveCapacity ( int level , VehicleType spotType ) {
+        return levelsWithCapacity.get(spotType).get(level);
+    }
+
+    boolean mayFit ( int level , VehicleType vehicleType ) {
+        for (VehicleType spotType : vehicleType.getFittingSpotTypes()) {
+            if (mayHaveCapacity(level , spotType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Claims the nearest free spot of spotType on the level (any size the vehicle fits when
+    // spotType is null) and brings the level's capacity hints up to date. Returns the spot id,
+    // or NO_SPOT.
+    long tryPark ( int level , Vehicle vehicle , VehicleType spotType , boolean wait ) {
+        Level candidate = levels.get(level);
+        int index;
+        if (spotType == null) {
+            index = candidate.parkVehicle(vehicle , wait);
+            for (VehicleType type : vehicle.getType().getFittingSpotTypes()) {
+                refreshCapacity(level , type);
+            }
+        } else {
+            index = candidate.parkVehicle(vehicle , spotType , wait);
+            refreshCapacity(level , spotType);
+        }
+        if (index < 0) {
+            return NO_SPOT;
+        }
+        changed();
+        return spotId(level , index);
+    }
+
+    private void refreshCapacity ( int level , VehicleType spotType ) {
+        Level candidate = levels.get(level);
+        if (!candidate.hasCapacity(spotType)) {
+            AtomicBitSet withCapacity = levelsWithCapacity.get(spotType);
+            withCapacity.clear(level);
+            // A spot freed between the check and the clear must not be hidden.
+            if (candidate.hasCapacity(spotType)) {
+                withCapacity.set(level);
+            }
+        }
+    }
+
+    // Frees the ticket's spot directly from its level and spot indexes. Returns the vehicle,
+    // or null if the ticket was already used. Once the exit record is queued the spot stays free
+    // even if the write then fails: the vehicle has left, and the failed journal keeps the lot
+    // read-only until a restart.
+    public Vehicle unpark ( ParkingTicket ticket ) {
+        checkWritable();
+        if (!ticketsByPlate.remove(ticket.getLicensePlate() , ticket)) {
+            return null;
+        }
+        ParkingJournal journal = this.journal;
+        long sequence = releaseOrRestore(ticket , journal);
+        if (journal != null) {
+            journal.awaitDurable(sequence);
+        }
+        return ticket.getVehicle();
+    }
+
+    // Same as unpark, but the future completes once the exit is on disk instead of blocking.
+    public CompletableFuture<Vehicle> unparkAsync ( ParkingTicket ticket ) {
+        checkWritable();
+        if (!ticketsByPlate.remove(ticket.getLicensePlate() , ticket)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ParkingJournal journal = this.journal;
+        long sequence = releaseOrRestore(ticket , journal);
+        return journal == null ? CompletableFuture.completedFuture(ticket.getVehicle())
+                               : journal.whenDurable(sequence).thenApply(done -> ticket.getVehicle());
+    }
+
+    public Vehicle unpark ( String licensePlate ) {
+        ParkingTicket ticket = ticketsByPlate.get(licensePlate);
+        return ticket == null ? null : unpark(ticket);
+    }
+
+    public ParkingTicket findVehicle ( String licensePlate ) {
+        return ticketsByPlate.get(licensePlate);
+    }
+
+    public void removeVehicle ( ParkingSpot spot ) {
+        Vehicle vehicle = spot.getVehicle();
+        ParkingTicket ticket = vehicle == null ? null : ticketsByPlate.get(vehicle.getLicensePlate());
+        if (ticket != null && ticket.getLevel() == spot.getLevel() && ticket.getSpot() == spot.getIndex()) {
+            unpark(ticket);
+        }
+    }
+
+    private ParkingSpot getSpot ( ParkingTicket ticket ) {
+        return levels.get(ticket.getLevel()).getSpot(ticket.getSpot());
+    }
+
+    // The exit is journaled before the spot is freed, so the spot's next park is journaled after
+    // it. Returns the journal sequence number, or -1 without a journal.
+    private long release ( int level , int index , ParkingJournal journal ) {
+        long sequence = journal == null ? -1 : journal.logUnpark(level , index , levels.get(level).getSpotType(index));
+        free(level , index);
+        return sequence;
+    }
+
+    // An exit the journal refuses leaves the vehicle parked under its ticket.
+    private long releaseOrRestore ( ParkingTicket ticket , ParkingJournal journal ) {
+        try {
+            return release(ticket.getLevel() , ticket.getSpot() , journal);
+        } catch (RuntimeException e) {
+            ticketsByPlate.putIfAbsent(ticket.getLicensePlate() , ticket);
+            throw e;
+        }
+    }
+
+    private void free ( int level , int index ) {
+        Level owner = levels.get(level);
+        VehicleType spotType = owner.getSpotType(index);
+        if (owner.removeVehicle(index)) {
+            levelsWithCapacity.get(spotType).set(level);
+            changed();
+        }
+    }
+
+    private void changed () {
+        changes.increment();
+        publisher.markChanged();
+    }
+
+    // Reads only the per-level atomic counters: never blocks and never touches a level lock.
+    public AvailabilitySnapshot snapshot () {
+        int types = VehicleType.values().length;
+        int[][] free = new int[levels.size()][types];
+        int[][] capacity = new int[levels.size()][types];
+        long version = changes.sum();
+        for (int i = 0 ; i < levels.size() ; i++) {
+            for (VehicleType type : VehicleType.values()) {
+                free[i][type.ordinal()] = levels.get(i).getFreeCount(type);
+                capacity[i][type.ordinal()] = levels.get(i).getCapacity(type);
+            }
+        }
+        return new AvailabilitySnapshot(free , capacity , version);
+    }
+
+    // The listener gets the current snapshot shortly after subscribing, then a fresh one after
+    // changes, all from the publisher thread. Bursts of changes are coalesced, so it sees the
+    // latest state rather than every step.
+    public void subscribe ( AvailabilityListener listener ) {
+        publisher.subscribe(listener);
+    }
+
+    public void unsubscribe ( AvailabilityListener listener ) {
+        publisher.unsubscribe(listener);
+    }
+
+    // Availability notifications a listener threw on.
+    public long getFailedNotifications () {
+        return publisher.getFailures();
+    }
 }
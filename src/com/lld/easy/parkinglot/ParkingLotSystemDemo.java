@@ -1,21 +1,44 @@
 package com.lld.easy.parkinglot;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ParkingLotSystemDemo {
     public static void main(String[] args) {
-        ParkingLot parkingLot = ParkingLot.getInstance(3, 10); // 3 levels with 10 spots each
+        GarageRegistry garages = new GarageRegistry(2);
+        garages.register("downtown", 40.7128, -74.0060, new ParkingLot(3, 10)); // 3 levels with 10 spots each
+        garages.register("airport", 40.6413, -73.7781, new ParkingLot(List.<VehicleType[]>of(Level.layout(5, 10, 5)),
+                                                                      new BestFitStrategy()));
 
+        // Every park and exit goes through the registry, so it runs on the garage's shard thread.
         Vehicle car1 = new Car("ABC123");
         Vehicle motorcycle1 = new Motorcycle("DEF456");
 
-        ParkingSpot carSpot = parkingLot.parkVehicle(car1);
-        ParkingSpot motorcycleSpot = parkingLot.parkVehicle(motorcycle1);
+        ParkingTicket carTicket = garages.park("downtown", car1, 0).join();
+        ParkingTicket motorcycleTicket = garages.park("downtown", motorcycle1, 0).join();
 
-        if (carSpot != null && motorcycleSpot != null) {
-            parkingLot.removeVehicle(carSpot);
-            parkingLot.removeVehicle(motorcycleSpot);
+        if (carTicket != null && motorcycleTicket != null) {
+            garages.unpark("downtown", carTicket).join();
+            garages.unpark("downtown", motorcycleTicket).join();
         }
+
+        Vehicle car2 = new Car("GHI789");
+        ParkingTicket ticket = garages.park("downtown", car2, 0).join();
+        if (ticket != null && garages.findVehicle("downtown", "GHI789") == ticket) {
+            garages.unpark("downtown", ticket).join();
+        }
+
+        // The trucks only fit at the airport garage, so it is the nearest with room despite the distance.
+        ParkingTicket truckTicket = garages.findNearestWithCapacity(40.7130, -74.0050, VehicleType.TRUCK)
+                                           .thenCompose(garage -> garage.isPresent()
+                                                   ? garages.park(garage.get().getId(), new Truck("JKL012"), 0)
+                                                   : CompletableFuture.completedFuture(null))
+                                           .join();
+        if (truckTicket != null) {
+            garages.unpark("airport", truckTicket).join();
+        } else {
+            System.out.println("No garage has room for a truck");
+        }
+        garages.close();
     }
 }
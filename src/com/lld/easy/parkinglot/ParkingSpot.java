@@ -1,32 +1,33 @@
 package com.lld.easy.parkinglot;
 
+// A read-only view of one spot. Levels keep their spots in primitive arrays, so this is
+// created on demand and always reflects the level's current state.
 class ParkingSpot {
-    private boolean available;
-    private Vehicle vehicle;
-    private final VehicleType type;
+    private final Level level;
+    private final int index;
 
-    public ParkingSpot ( VehicleType type ) {
-        this.type = type;
-        this.available = true;
+    public ParkingSpot ( Level level , int index ) {
+        this.level = level;
+        this.index = index;
     }
 
-    public synchronized boolean isAvailable () {
-        return available;
+    public boolean isAvailable () {
+        return !level.isOccupied(index);
     }
 
-    public synchronized void parkVehicle ( Vehicle vehicle ) {
-        this.vehicle = vehicle;
-        this.available = false;
-        System.out.println(vehicle.getType() + " parked in spot");
+    public Vehicle getVehicle () {
+        return level.getVehicle(index);
     }
 
-    public synchronized void removeVehicle () {
-        this.vehicle = null;
-        this.available = true;
-        System.out.println("Spot is now available");
+    public VehicleType getType () {
+        return level.getSpotType(index);
     }
 
-    public VehicleType getType () {
-        return type;
+    public int getLevel () {
+        return level.getLevelIndex();
+    }
+
+    public int getIndex () {
+        return index;
     }
 }
@@ -0,0 +1,37 @@
+package com.lld.easy.parkinglot;
+
+// Issued when a vehicle parks. Holds the level and spot indexes, so the exit gate can free
+// the spot directly instead of searching the garage for it.
+class ParkingTicket {
+    private final Vehicle vehicle;
+    private final int level;
+    private final int spot;
+    private final long issuedAt;
+
+    public ParkingTicket ( Vehicle vehicle , int level , int spot ) {
+        this.vehicle = vehicle;
+        this.level = level;
+        this.spot = spot;
+        this.issuedAt = System.currentTimeMillis();
+    }
+
+    public Vehicle getVehicle () {
+        return vehicle;
+    }
+
+    public String getLicensePlate () {
+        return vehicle.getLicensePlate();
+    }
+
+    public int getLevel () {
+        return level;
+    }
+
+    public int getSpot () {
+        return spot;
+    }
+
+    public long getIssuedAt () {
+        return issuedAt;
+    }
+}
@@ -9,6 +9,17 @@ abstract class Vehicle {
         this.type = type;
     }
 
+    public static Vehicle create ( VehicleType type , String licensePlate ) {
+        switch (type) {
+            case MOTORCYCLE:
+                return new Motorcycle(licensePlate);
+            case TRUCK:
+                return new Truck(licensePlate);
+            default:
+                return new Car(licensePlate);
+        }
+    }
+
     public String getLicensePlate () {
         return licensePlate;
     }
@@ -0,0 +1,41 @@
+package com.lld.easy.parkinglot;
+
+// Int handles for parked vehicles, so a level stores one int per spot instead of an object
+// reference. Released handles go on a free stack and are handed out again first, which keeps
+// the live vehicles packed at the front of the table. Never allocates after construction;
+// acquire and release are guarded by the owning level's lock.
+class VehicleTable {
+    private final Vehicle[] vehicles;
+    private final int[] freeHandles;
+    private int freeCount;
+
+    public VehicleTable ( int capacity ) {
+        vehicles = new Vehicle[capacity];
+        freeHandles = new int[capacity];
+        for (int i = 0 ; i < capacity ; i++) {
+            freeHandles[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+    }
+
+    // Returns -1 when every handle is in use.
+    public int acquire ( Vehicle vehicle ) {
+        if (freeCount == 0) {
+            return -1;
+        }
+        int handle = freeHandles[--freeCount];
+        vehicles[handle] = vehicle;
+        return handle;
+    }
+
+    public Vehicle release ( int handle ) {
+        Vehicle vehicle = vehicles[handle];
+        vehicles[handle] = null;
+        freeHandles[freeCount++] = handle;
+        return vehicle;
+    }
+
+    public Vehicle get ( int handle ) {
+        return vehicles[handle];
+    }
+}
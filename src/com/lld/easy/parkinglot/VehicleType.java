@@ -1,5 +1,46 @@
 package com.lld.easy.parkinglot;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 enum VehicleType {
-    CAR, MOTORCYCLE, TRUCK
+    CAR(2), MOTORCYCLE(1), TRUCK(3);
+
+    // values() copies its array on every call; this one is shared, for lookups on hot paths.
+    private static final VehicleType[] VALUES = values();
+    // Spot types each vehicle type fits, smallest first.
+    private static final VehicleType[][] FITTING_SPOT_TYPES = new VehicleType[values().length][];
+
+    static {
+        VehicleType[] bySize = values().clone();
+        Arrays.sort(bySize , Comparator.comparingInt(VehicleType::getSize));
+        for (VehicleType vehicle : values()) {
+            FITTING_SPOT_TYPES[vehicle.ordinal()] = Arrays.stream(bySize)
+                                                          .filter(vehicle::fitsIn)
+                                                          .toArray(VehicleType[]::new);
+        }
+    }
+
+    private final int size;
+
+    VehicleType ( int size ) {
+        this.size = size;
+    }
+
+    public int getSize () {
+        return size;
+    }
+
+    // A vehicle fits any spot at least its own size.
+    public boolean fitsIn ( VehicleType spotType ) {
+        return spotType.size >= size;
+    }
+
+    public static VehicleType ofOrdinal ( int ordinal ) {
+        return VALUES[ordinal];
+    }
+
+    public VehicleType[] getFittingSpotTypes () {
+        return FITTING_SPOT_TYPES[ordinal()];
+    }
 }
@@ -0,0 +1,8 @@
+package com.lld.medium.kafka;
+
+// How much replication a producer waits for before treating a write as done.
+public enum Acks {
+    NONE,    // hand the event over and return without waiting for the append
+    LEADER,  // wait for the leader replica's append
+    ALL      // wait until every in-sync replica has the event (high watermark passed it)
+}
@@ -0,0 +1,9 @@
+package com.lld.medium.kafka;
+
+import java.util.List;
+
+// How a producer hands a finished batch to a partition; returns the first event's offset.
+interface BatchWriter {
+
+    long write ( Partition partition , List<Event> events );
+}
@@ -0,0 +1,98 @@
+package com.lld.medium.kafka;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs a workload through warmup and measured iterations and prints one line per benchmark:
+// throughput, p50/p99/p999 latency of the measured iterations, and bytes allocated per
+// operation across all threads.
+class BenchmarkRunner {
+
+    // One iteration of a benchmark: perform the operations and record a latency for each.
+    interface Workload {
+        void run ( int operations , LatencyRecorder recorder ) throws Exception;
+    }
+
+    private static final String FORMAT = "%-32s %14s %10s %10s %10s %12s%n";
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final LongAdder RETIRED_THREAD_BYTES = new LongAdder();
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+
+    BenchmarkRunner ( int warmupIterations , int measuredIterations ) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    void printHeader () {
+        System.out.printf(Locale.ROOT , FORMAT , "benchmark" , "ops/s" , "p50 us" , "p99 us" , "p999 us" , "alloc B/op");
+    }
+
+    void run ( String name , int operations , int samplesPerOperation , Workload workload ) throws Exception {
+        for (int i = 0 ; i < warmupIterations ; i++) {
+            workload.run(operations , new LatencyRecorder(operations * samplesPerOperation));
+        }
+        LatencyRecorder recorder = new LatencyRecorder(operations * samplesPerOperation * measuredIterations);
+        Map<Long, Long> allocatedBefore = allocatedByThread();
+        long retiredBefore = RETIRED_THREAD_BYTES.sum();
+        long start = System.nanoTime();
+        for (int i = 0 ; i < measuredIterations ; i++) {
+            workload.run(operations , recorder);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedSince(allocatedBefore , retiredBefore);
+        long totalOperations = (long) operations * measuredIterations;
+        long[] latency = recorder.percentiles(50 , 99 , 99.9);
+        System.out.printf(Locale.ROOT , FORMAT , name ,
+                          String.format(Locale.ROOT , "%,.0f" , totalOperations * 1e9 / elapsed) ,
+                          micros(latency[0]) , micros(latency[1]) , micros(latency[2]) ,
+                          String.format(Locale.ROOT , "%,.1f" , (double) allocated / totalOperations));
+    }
+
+    // Wraps the body of a thread started by a workload, so its allocation is still counted
+    // once the thread has exited and can no longer be sampled.
+    static Runnable counted ( Runnable work ) {
+        return () -> {
+            try {
+                work.run();
+            } finally {
+                RETIRED_THREAD_BYTES.add(THREADS.getCurrentThreadAllocatedBytes());
+            }
+        };
+    }
+
+    private static Map<Long, Long> allocatedByThread () {
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0 ; i < ids.length ; i++) {
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i] , bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    private static long allocatedSince ( Map<Long, Long> before , long retiredBefore ) {
+        Map<Long, Long> after = allocatedByThread();
+        long allocated = RETIRED_THREAD_BYTES.sum() - retiredBefore;
+        for (Map.Entry<Long, Long> thread : after.entrySet()) {
+            allocated += thread.getValue() - before.getOrDefault(thread.getKey() , 0L);
+        }
+        for (Map.Entry<Long, Long> thread : before.entrySet()) {
+            if (!after.containsKey(thread.getKey())) {
+                allocated -= thread.getValue();
+            }
+        }
+        return allocated;
+    }
+
+    private static String micros ( long nanos ) {
+        return String.format(Locale.ROOT , "%.2f" , nanos / 1000.0);
+    }
+}
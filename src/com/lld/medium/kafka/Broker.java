@@ -6,6 +6,8 @@ import java.util.Map;
 public class Broker {
     private String id;
     private Map<String, Topic> topics = new HashMap<>();
+    private Map<String, Map<Integer, Partition>> replicas = new HashMap<>();
+    private volatile boolean online = true;
 
     public Broker ( String id ) {
         this.id = id;
@@ -21,6 +23,36 @@ public class Broker {
     }
 
 
+    // Replica of a replicated topic's partition that lives on this broker, leader or follower.
+    public void addReplica ( String topic , Partition replica ) {
+        replicas.computeIfAbsent(topic , name -> new HashMap<>()).put(replica.getId() , replica);
+    }
+
+    public Partition getReplica ( String topic , int partition ) {
+        Map<Integer, Partition> hosted = replicas.get(topic);
+        return hosted == null ? null : hosted.get(partition);
+    }
+
+    public boolean isOnline () {
+        return online;
+    }
+
+    void setOnline ( boolean online ) {
+        this.online = online;
+    }
+
+    public FetchResult fetch ( String topic , int partition , long offset , int minBytes , long maxWaitMs ,
+                               int maxEvents ) {
+        Partition target = getReplica(topic , partition);
+        if (target == null && topics.containsKey(topic)) {
+            target = topics.get(topic).getPartition(partition);
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("Broker " + id + " does not host topic " + topic);
+        }
+        return target.fetch(offset , minBytes , maxWaitMs , maxEvents);
+    }
+
     public String getId () {
         return id;
     }
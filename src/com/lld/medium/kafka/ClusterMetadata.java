@@ -0,0 +1,81 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable, versioned view of the cluster. Readers grab the current instance from Zookeeper
+// once and then look up brokers, topics and partition leaders with no locking at all; writers
+// derive a new snapshot with one of the with* methods and publish it.
+public final class ClusterMetadata {
+
+    static final ClusterMetadata EMPTY = new ClusterMetadata(0 , Map.of() , Map.of() , Map.of());
+
+    private final long version;
+    private final Map<String, Broker> brokers;
+    private final Map<String, Topic> topics;
+    private final Map<String, List<PartitionMetadata>> partitions;
+
+    private ClusterMetadata ( long version , Map<String, Broker> brokers , Map<String, Topic> topics ,
+                              Map<String, List<PartitionMetadata>> partitions ) {
+        this.version = version;
+        this.brokers = brokers;
+        this.topics = topics;
+        this.partitions = partitions;
+    }
+
+    ClusterMetadata withBroker ( Broker broker ) {
+        Map<String, Broker> next = new HashMap<>(brokers);
+        next.put(broker.getId() , broker);
+        return new ClusterMetadata(version + 1 , Map.copyOf(next) , topics , partitions);
+    }
+
+    ClusterMetadata withTopic ( Topic topic ) {
+        Map<String, Topic> next = new HashMap<>(topics);
+        next.put(topic.getName() , topic);
+        return new ClusterMetadata(version + 1 , brokers , Map.copyOf(next) , partitions);
+    }
+
+    ClusterMetadata withPartition ( PartitionMetadata partition ) {
+        List<PartitionMetadata> states = new ArrayList<>(partitions.getOrDefault(partition.getTopic() , List.of()));
+        while (states.size() <= partition.getPartition()) {
+            states.add(null);
+        }
+        states.set(partition.getPartition() , partition);
+        Map<String, List<PartitionMetadata>> next = new HashMap<>(partitions);
+        next.put(partition.getTopic() , Collections.unmodifiableList(states));
+        return new ClusterMetadata(version + 1 , brokers , topics , Map.copyOf(next));
+    }
+
+    public long getVersion () {
+        return version;
+    }
+
+    public Broker getBroker ( String id ) {
+        return brokers.get(id);
+    }
+
+    public Map<String, Broker> getBrokers () {
+        return brokers;
+    }
+
+    public Topic getTopic ( String name ) {
+        return topics.get(name);
+    }
+
+    public Map<String, Topic> getTopics () {
+        return topics;
+    }
+
+    public PartitionMetadata getPartition ( String topic , int partition ) {
+        List<PartitionMetadata> states = partitions.get(topic);
+        return states == null || partition >= states.size() ? null : states.get(partition);
+    }
+
+    public String getLeader ( String topic , int partition ) {
+        PartitionMetadata state = getPartition(topic , partition);
+        return state == null ? null : state.getLeaderId();
+    }
+}
@@ -0,0 +1,14 @@
+package com.lld.medium.kafka;
+
+public interface CompressionCodec {
+
+    // Stored in the low three bits of a batch's attributes byte; 0 means uncompressed.
+    byte getId ();
+
+    String getName ();
+
+    byte[] compress ( byte[] source , int offset , int length );
+
+    // Fills destination completely from the compressed bytes.
+    void decompress ( byte[] source , int offset , int length , byte[] destination );
+}
@@ -0,0 +1,36 @@
+package com.lld.medium.kafka;
+
+// Registry used by readers to find the codec a batch was written with.
+public final class CompressionCodecs {
+
+    public static final byte NONE = 0;
+    static final int ID_MASK = 0x07;
+
+    private static final CompressionCodec[] CODECS = new CompressionCodec[ID_MASK + 1];
+
+    public static final CompressionCodec DEFLATE = register(new DeflateCodec());
+    public static final CompressionCodec LZ4 = register(new Lz4Codec());
+
+    private CompressionCodecs () {
+    }
+
+    public static synchronized CompressionCodec register ( CompressionCodec codec ) {
+        int id = codec.getId();
+        if (id <= NONE || id > ID_MASK) {
+            throw new IllegalArgumentException("Codec id must be between 1 and " + ID_MASK + ", got " + id);
+        }
+        if (CODECS[id] != null && CODECS[id] != codec) {
+            throw new IllegalArgumentException("Codec id " + id + " is already used by " + CODECS[id].getName());
+        }
+        CODECS[id] = codec;
+        return codec;
+    }
+
+    static CompressionCodec get ( int id ) {
+        CompressionCodec codec = CODECS[id & ID_MASK];
+        if (codec == null) {
+            throw new IllegalStateException("No compression codec registered for id " + id);
+        }
+        return codec;
+    }
+}
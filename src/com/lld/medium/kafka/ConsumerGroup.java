@@ -0,0 +1,104 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class ConsumerGroup {
+
+    private final String groupId;
+    private final Topic topic;
+    private final PartitionAssignor assignor;
+    private final Consumer<Event> handler;
+    private final List<String> members = new ArrayList<>();
+    private Map<String, List<Partition>> assignment = Collections.emptyMap();
+    private final Map<PartitionWorker, Thread> workers = new LinkedHashMap<>();
+    private final HandlerFailurePolicy failurePolicy;
+    private final Counter handlerFailed;
+
+    public ConsumerGroup ( String groupId , Topic topic , PartitionAssignor assignor , Consumer<Event> handler ) {
+        this(groupId , topic , assignor , handler , HandlerFailurePolicy.RETRY);
+    }
+
+    public ConsumerGroup ( String groupId , Topic topic , PartitionAssignor assignor , Consumer<Event> handler ,
+                           HandlerFailurePolicy failurePolicy ) {
+        this.groupId = groupId;
+        this.topic = topic;
+        this.assignor = assignor;
+        this.handler = handler;
+        this.failurePolicy = failurePolicy;
+        this.handlerFailed = MetricsRegistry.getDefault().counter("consumer-group." + groupId + ".handler-failed");
+    }
+
+    public synchronized void join ( String memberId ) {
+        if (!members.contains(memberId)) {
+            members.add(memberId);
+            rebalance();
+        }
+    }
+
+    public synchronized void leave ( String memberId ) {
+        if (members.remove(memberId)) {
+            rebalance();
+        }
+    }
+
+    // Signals every worker to stop, reassigns partitions across the current members and starts
+    // one worker per owned partition. Nothing is joined under the group lock: each new worker
+    // waits for the previous generation itself, then resumes from the group's committed offsets.
+    private void rebalance () {
+        List<Thread> previous = stopWorkers();
+        Collections.sort(members);
+        assignment = members.isEmpty() ? Collections.emptyMap() : assignor.assign(members , topic);
+        for (Map.Entry<String, List<Partition>> entry : assignment.entrySet()) {
+            for (Partition partition : entry.getValue()) {
+                PartitionWorker worker = new PartitionWorker(groupId , topic , partition , handler , failurePolicy ,
+                                                             handlerFailed , previous);
+                Thread thread = new Thread(worker , groupId + "-" + entry.getKey() + "-p" + partition.getId());
+                workers.put(worker , thread);
+                thread.start();
+            }
+        }
+    }
+
+    private List<Thread> stopWorkers () {
+        for (PartitionWorker worker : workers.keySet()) {
+            worker.stop();
+        }
+        List<Thread> stopped = new ArrayList<>(workers.values());
+        workers.clear();
+        return stopped;
+    }
+
+    // Joins outside the lock, skipping the caller in case a handler closes its own group.
+    public void close () {
+        List<Thread> stopped;
+        synchronized (this) {
+            members.clear();
+            stopped = stopWorkers();
+            assignment = Collections.emptyMap();
+        }
+        for (Thread thread : stopped) {
+            if (thread == Thread.currentThread()) {
+                continue;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public synchronized Map<String, List<Partition>> getAssignment () {
+        return assignment;
+    }
+
+    public String getGroupId () {
+        return groupId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.lld.medium.kafka;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic count backed by a striped LongAdder, so hot paths updating it from many threads
+// do not contend on a single cache line.
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment () {
+        count.increment();
+    }
+
+    public void add ( long amount ) {
+        count.add(amount);
+    }
+
+    public long get () {
+        return count.sum();
+    }
+}
@@ -0,0 +1,62 @@
+package com.lld.medium.kafka;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// zlib deflate from the JDK: slower than LZ4 but noticeably smaller, in the spirit of zstd.
+class DeflateCodec implements CompressionCodec {
+
+    @Override
+    public byte getId () {
+        return 1;
+    }
+
+    @Override
+    public String getName () {
+        return "deflate";
+    }
+
+    @Override
+    public byte[] compress ( byte[] source , int offset , int length ) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(source , offset , length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk , 0 , deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void decompress ( byte[] source , int offset , int length , byte[] destination ) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(source , offset , length);
+            int written = 0;
+            while (written < destination.length) {
+                int inflated = inflater.inflate(destination , written , destination.length - written);
+                written += inflated;
+                // A cut-short or corrupt stream stops producing output without ever finishing.
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+            if (written < destination.length) {
+                throw new IllegalStateException("Truncated deflate batch: inflated " + written + " of "
+                                                        + destination.length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt deflate batch" , e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,25 +1,94 @@
 package com.lld.medium.kafka;
 
+import java.nio.ByteBuffer;
+
+// Either built from strings by a producer, or a flyweight view over an encoded body (see
+// EventCodec) sitting in a log buffer. A view only decodes its strings when a getter is called,
+// and is written to other buffers as a straight byte copy.
 public class Event {
     private String id;
     private String type;
     private  String data;
+    private long offset = -1;
+    private ByteBuffer body;
+    private Object owner; // Lease on the pooled buffer holding body, or null
+    private volatile boolean decoded;
 
     public Event ( String id , String type , String data ) {
         this.id = id;
         this.type = type;
         this.data = data;
+        this.decoded = true;
+    }
+
+    Event ( String id , String type , String data , long offset ) {
+        this(id , type , data);
+        this.offset = offset;
+    }
+
+    Event ( ByteBuffer body , long offset ) {
+        this(body , offset , null);
+    }
+
+    // A view whose body lives in a recycled buffer; the buffer is reused only once owner, and so
+    // every view holding it, is unreachable.
+    Event ( ByteBuffer body , long offset , Object owner ) {
+        this.body = body;
+        this.offset = offset;
+        this.owner = owner;
+    }
+
+    // Wraps an already encoded body without copying it; the buffer must not be modified afterwards.
+    public static Event wrap ( ByteBuffer body ) {
+        return new Event(body.slice() , -1);
     }
 
     public String getId () {
+        decode();
         return id;
     }
 
     public String getType () {
+        decode();
         return type;
     }
 
     public String getData () {
+        decode();
         return data;
     }
+
+    private void decode () {
+        if (!decoded) {
+            String[] fields = EventCodec.read(body);
+            id = fields[0];
+            type = fields[1];
+            data = fields[2];
+            decoded = true;
+        }
+    }
+
+    // Position of this event in its partition, or -1 until it has been appended.
+    public long getOffset () {
+        return offset;
+    }
+
+    public int sizeInBytes () {
+        return body != null ? body.remaining() : EventCodec.sizeOf(id , type , data);
+    }
+
+    public void writeTo ( ByteBuffer out ) {
+        if (body != null) {
+            out.put(body.duplicate());
+        } else {
+            EventCodec.write(out , id , type , data);
+        }
+    }
+
+    Event withOffset ( long offset ) {
+        if (this.offset == offset) {
+            return this;
+        }
+        return body != null ? new Event(body , offset , owner) : new Event(id , type , data , offset);
+    }
 }
@@ -0,0 +1,127 @@
+package com.lld.medium.kafka;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Binary body of an event: three varint length headers followed by the UTF-8 bytes.
+// [varint idLength+1][varint typeLength+1][varint dataLength+1][id][type][data]
+// A stored length of 0 means the field is null.
+final class EventCodec {
+
+    private EventCodec () {
+    }
+
+    static int sizeOf ( String id , String type , String data ) {
+        return fieldSize(id) + fieldSize(type) + fieldSize(data);
+    }
+
+    private static int fieldSize ( String value ) {
+        if (value == null) {
+            return 1;
+        }
+        int length = utf8Length(value);
+        return varintSize(length + 1) + length;
+    }
+
+    static void write ( ByteBuffer out , String id , String type , String data ) {
+        byte[] idBytes = bytes(id);
+        byte[] typeBytes = bytes(type);
+        byte[] dataBytes = bytes(data);
+        writeVarint(out , idBytes == null ? 0 : idBytes.length + 1);
+        writeVarint(out , typeBytes == null ? 0 : typeBytes.length + 1);
+        writeVarint(out , dataBytes == null ? 0 : dataBytes.length + 1);
+        if (idBytes != null) {
+            out.put(idBytes);
+        }
+        if (typeBytes != null) {
+            out.put(typeBytes);
+        }
+        if (dataBytes != null) {
+            out.put(dataBytes);
+        }
+    }
+
+    // Decodes the three fields of a body that starts at body.position(); body is left untouched.
+    static String[] read ( ByteBuffer body ) {
+        ByteBuffer reader = body.duplicate();
+        int idLength = readVarint(reader) - 1;
+        int typeLength = readVarint(reader) - 1;
+        int dataLength = readVarint(reader) - 1;
+        return new String[]{ string(reader , idLength) , string(reader , typeLength) , string(reader , dataLength) };
+    }
+
+    private static String string ( ByteBuffer reader , int length ) {
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (reader.hasArray()) {
+            value = new String(reader.array() , reader.arrayOffset() + reader.position() , length ,
+                               StandardCharsets.UTF_8);
+            reader.position(reader.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            reader.get(bytes);
+            value = new String(bytes , StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static byte[] bytes ( String value ) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Counts exactly what String.getBytes(UTF_8) writes: a surrogate pair is 4 bytes, and an
+    // unpaired surrogate is replaced by a single '?'.
+    static int utf8Length ( String value ) {
+        int length = 0;
+        for (int i = 0 ; i < value.length() ; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length++;
+                }
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    static int varintSize ( int value ) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarint ( ByteBuffer out , int value ) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int readVarint ( ByteBuffer in ) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -2,30 +2,68 @@ package com.lld.medium.kafka;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class EventConsumer implements Runnable {
 
     private EventQueue queue = new EventQueue();
     private List<Server> servers = new ArrayList<>();
+    private List<ServerChannel> channels;
+    private final Counter consumed = MetricsRegistry.getDefault().counter("consumer.events-consumed");
+    private volatile boolean running = true;
 
     public EventConsumer ( EventQueue queue , List<Server> servers ) {
         this.queue = queue;
         this.servers = servers;
     }
 
+    // Parallel dispatch mode: each event is handed to every server's channel on the executor,
+    // with at most maxInFlight events queued per server before the overflow policy applies.
+    public EventConsumer ( EventQueue queue , List<Server> servers , ExecutorService executor , int maxInFlight ,
+                           OverflowPolicy overflowPolicy ) {
+        this(queue , servers);
+        this.channels = new ArrayList<>(servers.size());
+        for (Server server : servers) {
+            channels.add(new ServerChannel(server , executor , maxInFlight , overflowPolicy));
+        }
+    }
+
     public void consumeEvents () {
-        while (true) {
-            System.out.println("\nWaiting for the next event...");
+        while (running) {
             Event event = queue.getNextEvent();
+            if (!running) {
+                break;
+            }
+            consumed.increment();
 
-            System.out.println(
-                    "Consumed event: ID=" + event.getId() + ", Type=" + event.getType() + ", Data=" + event.getData());
+            if (channels != null) {
+                for (ServerChannel channel : channels) {
+                    channel.offer(event);
+                }
+                continue;
+            }
 
             for (Server server : servers) {
-                System.out.println("\n Notifying server: " + server.getId());
-                server.notify(event);
+                server.deliver(event);
+            }
+        }
+    }
+
+    // The loop notices on its next event: a consumer waiting on an empty queue needs one more
+    // event added (it is not delivered) before its thread exits.
+    public void stop () {
+        running = false;
+    }
+
+    public long getDropped ( Server server ) {
+        if (channels != null) {
+            for (ServerChannel channel : channels) {
+                if (channel.getServer() == server) {
+                    return channel.getDropped();
+                }
             }
         }
+        return 0;
     }
 
     @Override
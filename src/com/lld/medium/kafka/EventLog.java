@@ -0,0 +1,51 @@
+package com.lld.medium.kafka;
+
+import java.util.List;
+
+public interface EventLog {
+
+    long append ( Event event );
+
+    long append ( List<Event> events );
+
+    List<Event> read ( long offset , int maxEvents );
+
+    long getLogStartOffset ();
+
+    long getLogEndOffset ();
+
+    // Codec for newly written batches, or null for none. Logs that keep individual events
+    // rather than batches ignore it.
+    default void setCompression ( CompressionCodec compression ) {
+    }
+
+    // Removes whole segments (or chunks) that are entirely older than retentionMs, then the
+    // oldest ones while the log is larger than retentionBytes. The segment being written to is
+    // never removed. Returns the number of bytes freed.
+    long applyRetention ( long retentionMs , long retentionBytes );
+
+    // Rewrites everything but the segment being written to so that only the latest event per
+    // key survives. Offsets do not change; the log simply gets gaps. Returns the bytes freed.
+    long compact ();
+
+    // False for logs whose segments cannot be rewritten in place; Topic refuses a compacting
+    // RetentionPolicy for partitions on such a log, so compact() is never asked of them.
+    default boolean supportsCompaction () {
+        return true;
+    }
+
+    // Drops every event at or above offset so the log can be rewritten from there; used by a
+    // follower that may hold events a new leader never had. Logs may cut a little lower, to a
+    // batch boundary, so callers continue from getLogEndOffset() afterwards.
+    default void truncateTo ( long offset ) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support truncation");
+    }
+
+    // Moves closed segments out of local storage for logs backed by a remote tier. Returns the
+    // local bytes freed; logs without a remote tier free nothing.
+    default long offload () {
+        return 0;
+    }
+
+    void close ();
+}
@@ -1,14 +1,253 @@
 package com.lld.medium.kafka;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class EventProducer {
 
+    private static final AtomicLong NEXT_PRODUCER_ID = new AtomicLong();
+    private static final long RETRY_BACKOFF_MS = 100;
+
     private Partition partition;
+    private Topic topic;
+    private Partitioner partitioner;
+    private RecordAccumulator accumulator;
+    private Acks acks = Acks.LEADER;
+    private long ackTimeoutMs = 30_000;
+
+    // Idempotence: every batch carries this producer's id and the sequence number of its first
+    // event, one sequence per partition, so a retried batch is never written twice.
+    private volatile long producerId = -1;
+    private int retries;
+    private final Map<Partition, AtomicInteger> sequences = new ConcurrentHashMap<>();
+    private volatile Transaction transaction;
+    // Unbatched acks=NONE sends are written here so the caller never waits on the append.
+    private ExecutorService sender;
 
     public EventProducer ( Partition partition ) {
         this.partition = partition;
     }
 
+    // Batching mode: events passed to produceAsync are grouped until batchSize bytes
+    // have built up or lingerMs has elapsed.
+    public EventProducer ( Partition partition , int batchSize , long lingerMs ) {
+        this.partition = partition;
+        this.accumulator = new RecordAccumulator(batchSize , lingerMs , sealed -> { } , this::write);
+    }
+
+    public EventProducer ( Topic topic , Partitioner partitioner ) {
+        this.topic = topic;
+        this.partitioner = partitioner;
+    }
+
+    public EventProducer ( Topic topic , Partitioner partitioner , int batchSize , long lingerMs ) {
+        this.topic = topic;
+        this.partitioner = partitioner;
+        this.accumulator = new RecordAccumulator(batchSize , lingerMs ,
+                                                 sealed -> partitioner.onNewBatch(topic , indexOf(sealed)) ,
+                                                 this::write);
+    }
+
+    public void setAcks ( Acks acks ) {
+        this.acks = acks;
+    }
+
+    public void setAckTimeoutMs ( long ackTimeoutMs ) {
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    public synchronized void enableIdempotence () {
+        if (producerId < 0) {
+            producerId = NEXT_PRODUCER_ID.getAndIncrement();
+        }
+    }
+
+    // Failed writes are retried this many times; only allowed once idempotence makes retries safe.
+    public void setRetries ( int retries ) {
+        if (retries > 0 && producerId < 0) {
+            throw new IllegalStateException("Retries require enableIdempotence()");
+        }
+        this.retries = retries;
+    }
+
+    // Until commitTransaction() events are only buffered; the futures of produceAsync complete
+    // at commit, or fail on abort.
+    public synchronized void beginTransaction () {
+        if (transaction != null) {
+            throw new IllegalStateException("A transaction is already in progress");
+        }
+        enableIdempotence();
+        transaction = new Transaction();
+    }
+
+    public synchronized void commitTransaction () {
+        Transaction current = endTransaction();
+        current.commit(this::write);
+    }
+
+    public synchronized void abortTransaction () {
+        endTransaction().abort(new IllegalStateException("Transaction aborted"));
+    }
+
+    private Transaction endTransaction () {
+        Transaction current = transaction;
+        if (current == null) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        transaction = null;
+        return current;
+    }
+
     public void produceEvent ( Event event ) {
-        partition.addEvent(event);
+        if (transaction != null || acks == Acks.NONE) {
+            produceAsync(event);
+            return;
+        }
+        Partition target = route(event);
+        long offset = write(target , List.of(event));
+        sealed(target , event);
+        if (acks == Acks.ALL) {
+            awaitReplication(target , offset);
+        }
+    }
+
+    // Completes with the offset the event was written at, once the configured acks are in.
+    // With Acks.NONE it completes straight away with -1.
+    public CompletableFuture<Long> produceAsync ( Event event ) {
+        Partition target = route(event);
+        Transaction current = transaction;
+        CompletableFuture<Long> appended;
+        if (current != null) {
+            appended = current.add(target , event);
+        } else if (accumulator == null && acks == Acks.NONE) {
+            sender().execute(() -> write(target , List.of(event)));
+            sealed(target , event);
+            return CompletableFuture.completedFuture(-1L);
+        } else if (accumulator == null) {
+            appended = CompletableFuture.completedFuture(write(target , List.of(event)));
+            sealed(target , event);
+        } else {
+            appended = accumulator.append(target , event);
+        }
+        switch (acks) {
+            case NONE:
+                return CompletableFuture.completedFuture(-1L);
+            case ALL:
+                return appended.thenCompose(offset -> target.replicated(offset , ackTimeoutMs));
+            default:
+                return appended;
+        }
+    }
+
+    // Every write to a partition goes through here. Idempotent batches take the next sequence
+    // numbers for the partition and keep them across retries; the per-partition lock keeps
+    // batches arriving in sequence order.
+    private long write ( Partition target , List<Event> events ) {
+        if (producerId < 0) {
+            return target.addEvents(events);
+        }
+        AtomicInteger sequence = sequences.computeIfAbsent(target , key -> new AtomicInteger());
+        synchronized (sequence) {
+            int baseSequence = sequence.get();
+            for (int attempt = 0 ; ; attempt++) {
+                try {
+                    long baseOffset = target.addEvents(producerId , baseSequence , events);
+                    sequence.addAndGet(events.size());
+                    return baseOffset;
+                } catch (RuntimeException e) {
+                    if (attempt >= retries) {
+                        throw e;
+                    }
+                    backoff();
+                }
+            }
+        }
+    }
+
+    private void backoff () {
+        try {
+            TimeUnit.MILLISECONDS.sleep(RETRY_BACKOFF_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying" , e);
+        }
+    }
+
+    private synchronized ExecutorService sender () {
+        if (sender == null) {
+            sender = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable , "producer-sender");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sender;
+    }
+
+    public long getProducerId () {
+        return producerId;
+    }
+
+    private long awaitReplication ( Partition target , long offset ) {
+        if (!target.awaitReplication(offset , ackTimeoutMs)) {
+            throw new IllegalStateException("Offset " + offset + " of partition " + target.getId()
+                                                    + " was not replicated within " + ackTimeoutMs + " ms");
+        }
+        return offset;
+    }
+
+    private Partition route ( Event event ) {
+        if (topic == null) {
+            return partition;
+        }
+        return topic.getPartitions().get(partitioner.partition(topic , event));
+    }
+
+    // Without an accumulator every event is its own batch. Only a sticky placement is moved on;
+    // a keyed event went where its key hashes and says nothing about the sticky partition.
+    private void sealed ( Partition target , Event event ) {
+        if (topic != null && partitioner.isSticky(event)) {
+            partitioner.onNewBatch(topic , indexOf(target));
+        }
+    }
+
+    private int indexOf ( Partition target ) {
+        return topic.getPartitions().indexOf(target);
+    }
+
+    public void flush () {
+        if (accumulator != null) {
+            accumulator.flush();
+        }
+        ExecutorService current;
+        synchronized (this) {
+            current = sender;
+        }
+        if (current != null) {
+            try {
+                current.submit(() -> { }).get();
+            } catch (Exception e) {
+                throw new IllegalStateException("Flush interrupted" , e);
+            }
+        }
+    }
+
+    public void close () {
+        flush();
+        if (accumulator != null) {
+            accumulator.close();
+        }
+        synchronized (this) {
+            if (sender != null) {
+                sender.shutdown();
+            }
+        }
     }
 }
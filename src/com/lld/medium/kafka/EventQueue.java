@@ -1,6 +1,7 @@
 package com.lld.medium.kafka;
 
 import java.util.LinkedList;
+import java.util.List;
 
 public class EventQueue {
     private LinkedList<Event> queue = new LinkedList<>();
@@ -10,6 +11,15 @@ public class EventQueue {
         notifyAll();
     }
 
+    public synchronized void addEvents ( List<Event> events ) {
+        queue.addAll(events);
+        notifyAll();
+    }
+
+
+    public synchronized int size () {
+        return queue.size();
+    }
 
     public synchronized Event getNextEvent ( ) {
         while (queue.isEmpty()) {
@@ -0,0 +1,46 @@
+package com.lld.medium.kafka;
+
+import java.util.List;
+
+public class FetchResult {
+
+    private final List<Event> events;
+    private final long nextOffset;
+    private final long logEndOffset;
+    private final long highWatermark;
+    private final int sizeInBytes;
+
+    FetchResult ( List<Event> events , long nextOffset , long logEndOffset , long highWatermark , int sizeInBytes ) {
+        this.events = events;
+        this.nextOffset = nextOffset;
+        this.logEndOffset = logEndOffset;
+        this.highWatermark = highWatermark;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    public List<Event> getEvents () {
+        return events;
+    }
+
+    // Offset to pass to the next fetch.
+    public long getNextOffset () {
+        return nextOffset;
+    }
+
+    public long getLogEndOffset () {
+        return logEndOffset;
+    }
+
+    // Offset below which every in-sync replica has the data; consumers never see past it.
+    public long getHighWatermark () {
+        return highWatermark;
+    }
+
+    public int getSizeInBytes () {
+        return sizeInBytes;
+    }
+
+    public boolean isEmpty () {
+        return events.isEmpty();
+    }
+}
@@ -0,0 +1,108 @@
+package com.lld.medium.kafka;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// ObjectStore over a local directory, standing in for a real object store. Each object is a
+// file under root; writes go to a temporary file first and are moved into place, so a reader
+// never sees a partial object.
+public class FileSystemObjectStore implements ObjectStore {
+
+    private static final String TEMP_SUFFIX = ".uploading";
+
+    private final Path root;
+
+    public FileSystemObjectStore ( Path root ) {
+        this.root = root;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create object store " + root , e);
+        }
+    }
+
+    @Override
+    public void upload ( String key , Path source , long length ) {
+        Path target = resolve(key);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(target.getParent());
+            try (FileChannel in = FileChannel.open(source , StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp , StandardOpenOption.CREATE , StandardOpenOption.WRITE ,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long copied = 0;
+                while (copied < length) {
+                    copied += in.transferTo(copied , length - copied , out);
+                }
+            }
+            Files.move(temp , target , StandardCopyOption.REPLACE_EXISTING , StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to upload " + key , e);
+        }
+    }
+
+    @Override
+    public void download ( String key , Path target ) {
+        try {
+            Files.copy(resolve(key) , target , StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to download " + key , e);
+        }
+    }
+
+    @Override
+    public void put ( String key , byte[] data ) {
+        Path target = resolve(key);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(target.getParent());
+            Files.write(temp , data);
+            Files.move(temp , target , StandardCopyOption.REPLACE_EXISTING , StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write " + key , e);
+        }
+    }
+
+    @Override
+    public byte[] get ( String key ) {
+        try {
+            return Files.readAllBytes(resolve(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + key , e);
+        }
+    }
+
+    @Override
+    public void delete ( String key ) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to delete " + key , e);
+        }
+    }
+
+    @Override
+    public List<String> list ( String prefix ) {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                        .map(file -> root.relativize(file).toString().replace(file.getFileSystem().getSeparator() , "/"))
+                        .filter(key -> key.startsWith(prefix) && !key.endsWith(TEMP_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to list " + prefix , e);
+        }
+    }
+
+    private Path resolve ( String key ) {
+        return root.resolve(key);
+    }
+}
@@ -0,0 +1,7 @@
+package com.lld.medium.kafka;
+
+// What a consumer group worker does with an event whose handler threw.
+public enum HandlerFailurePolicy {
+    RETRY,  // commit up to the failed event and redeliver it after a short backoff
+    SKIP    // count the failure and move on to the next event
+}
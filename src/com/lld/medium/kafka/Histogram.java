@@ -0,0 +1,71 @@
+package com.lld.medium.kafka;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+// Log-linear histogram in the style of HdrHistogram: values below 64 get their own bucket,
+// larger values share 32 buckets per power of two, which keeps every recorded value within
+// about 3% of the bucket it lands in. Recording is a couple of shifts and one atomic add.
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final Counter count = new Counter();
+    private final LongAccumulator max = new LongAccumulator(Math::max , 0);
+
+    public void record ( long value ) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        max.accumulate(value);
+    }
+
+    public long getCount () {
+        return count.get();
+    }
+
+    public long getMax () {
+        return max.get();
+    }
+
+    // Upper bound of the bucket holding the given percentile (0..100); 0 when nothing was recorded.
+    public long percentile ( double percentile ) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1 , (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0 ; i < BUCKETS ; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i) , max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int bucketOf ( long value ) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound ( int bucket ) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,223 @@
+package com.lld.medium.kafka;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Keeps events as encoded bodies packed into pooled chunks; the map only holds flyweight views,
+// so retained events cost their UTF-8 bytes rather than a String per field. Chunks play the
+// role segments play on disk: retention and compaction drop a whole chunk at a time.
+public class InMemoryEventLog implements EventLog {
+
+    private static final BufferPool SHARED_CHUNKS = new BufferPool(64 * 1024 , 1024);
+    private static final Cleaner RETIRED_CHUNKS = Cleaner.create(runnable -> {
+        Thread thread = new Thread(runnable , "event-log-chunk-reclaimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BufferPool chunks;
+    private final Deque<Chunk> acquired = new ArrayDeque<>();
+    private Chunk chunk;
+    private final ConcurrentSkipListMap<Long, Event> events = new ConcurrentSkipListMap<>();
+    private volatile long nextOffset;
+
+    private static final class Chunk {
+        final ByteBuffer buffer;
+        // Every view into the chunk references its lease, so once a dropped chunk's lease is
+        // unreachable no reader can still see the buffer and it can go back to the pool.
+        final Object lease = new Object();
+        final long firstOffset;
+        long lastOffset;
+        long maxTimestamp;
+
+        Chunk ( ByteBuffer buffer , long firstOffset ) {
+            this.buffer = buffer;
+            this.firstOffset = firstOffset;
+        }
+    }
+
+    public InMemoryEventLog () {
+        this(SHARED_CHUNKS);
+    }
+
+    public InMemoryEventLog ( BufferPool chunks ) {
+        this.chunks = chunks;
+    }
+
+    @Override
+    public long append ( Event event ) {
+        return append(List.of(event));
+    }
+
+    @Override
+    public synchronized long append ( List<Event> batch ) {
+        long baseOffset = nextOffset;
+        long offset = baseOffset;
+        long timestamp = System.currentTimeMillis();
+        for (Event event : batch) {
+            ByteBuffer body = store(event , offset , timestamp);
+            events.put(offset , new Event(body , offset , acquired.peekLast().lease));
+            offset++;
+        }
+        nextOffset = offset;
+        return baseOffset;
+    }
+
+    // Oversized events get a buffer of their own, tracked like a chunk but never pooled.
+    private ByteBuffer store ( Event event , long offset , long timestamp ) {
+        int size = event.sizeInBytes();
+        if (size > chunks.getBufferSize()) {
+            ByteBuffer body = ByteBuffer.allocate(size);
+            event.writeTo(body);
+            Chunk standalone = new Chunk(body , offset);
+            standalone.lastOffset = offset;
+            standalone.maxTimestamp = timestamp;
+            acquired.add(standalone);
+            chunk = null;
+            return body.flip();
+        }
+        if (chunk == null || chunk.buffer.remaining() < size) {
+            chunk = new Chunk(chunks.acquire() , offset);
+            acquired.add(chunk);
+        }
+        int start = chunk.buffer.position();
+        event.writeTo(chunk.buffer);
+        chunk.lastOffset = offset;
+        chunk.maxTimestamp = timestamp;
+        ByteBuffer body = chunk.buffer.duplicate();
+        body.position(start).limit(start + size);
+        return body.slice();
+    }
+
+    @Override
+    public List<Event> read ( long offset , int maxEvents ) {
+        List<Event> result = new ArrayList<>(Math.min(maxEvents , 256));
+        for (Event event : events.tailMap(offset).values()) {
+            if (result.size() >= maxEvents) {
+                break;
+            }
+            result.add(event);
+        }
+        return result;
+    }
+
+    @Override
+    public long getLogStartOffset () {
+        Map.Entry<Long, Event> first = events.firstEntry();
+        return first == null ? nextOffset : first.getKey();
+    }
+
+    @Override
+    public long getLogEndOffset () {
+        return nextOffset;
+    }
+
+    @Override
+    public synchronized long applyRetention ( long retentionMs , long retentionBytes ) {
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        for (Chunk held : acquired) {
+            totalBytes += held.buffer.capacity();
+        }
+        long freed = 0;
+        while (acquired.size() > 1) {
+            Chunk oldest = acquired.peekFirst();
+            boolean expired = retentionMs >= 0 && now - oldest.maxTimestamp > retentionMs;
+            boolean oversized = retentionBytes >= 0 && totalBytes - freed > retentionBytes;
+            if (!expired && !oversized) {
+                break;
+            }
+            acquired.pollFirst();
+            freed += free(oldest);
+        }
+        return freed;
+    }
+
+    // Entries are dropped from every chunk but the one being written to; a chunk goes back to
+    // the pool once none of its events survive.
+    @Override
+    public synchronized long compact () {
+        Map<String, Long> latest = new HashMap<>();
+        for (Event event : events.values()) {
+            if (event.getId() != null) {
+                latest.put(event.getId() , event.getOffset());
+            }
+        }
+        long writable = chunk == null ? nextOffset : chunk.firstOffset;
+        for (Event event : events.headMap(writable).values()) {
+            if (event.getId() != null && latest.get(event.getId()) != event.getOffset()) {
+                events.remove(event.getOffset());
+            }
+        }
+        long freed = 0;
+        Iterator<Chunk> held = acquired.iterator();
+        while (held.hasNext()) {
+            Chunk candidate = held.next();
+            if (candidate == chunk) {
+                break;
+            }
+            if (events.subMap(candidate.firstOffset , true , candidate.lastOffset , true).isEmpty()) {
+                held.remove();
+                freed += free(candidate);
+            }
+        }
+        return freed;
+    }
+
+    private long free ( Chunk released ) {
+        events.subMap(released.firstOffset , true , released.lastOffset , true).clear();
+        retire(released);
+        return released.buffer.capacity();
+    }
+
+    // A consumer may still hold views over a dropped chunk, and a recycled buffer would change
+    // under them, so the buffer goes back to the pool only after its lease has been collected.
+    private void retire ( Chunk released ) {
+        ByteBuffer buffer = released.buffer;
+        BufferPool pool = chunks;
+        if (buffer.isDirect() && buffer.capacity() == pool.getBufferSize()) {
+            RETIRED_CHUNKS.register(released.lease , () -> pool.release(buffer));
+        }
+    }
+
+    // Chunks are dropped or cut short rather than rewound, since readers may still hold views
+    // over them; the next append starts a fresh chunk.
+    @Override
+    public synchronized void truncateTo ( long offset ) {
+        if (offset >= nextOffset) {
+            return;
+        }
+        events.tailMap(offset).clear();
+        Iterator<Chunk> held = acquired.descendingIterator();
+        while (held.hasNext()) {
+            Chunk candidate = held.next();
+            if (candidate.firstOffset < offset) {
+                candidate.lastOffset = Math.min(candidate.lastOffset , offset - 1);
+                break;
+            }
+            held.remove();
+            retire(candidate);
+        }
+        chunk = null;
+        nextOffset = Math.max(offset , 0);
+    }
+
+    // Hands every chunk back to the pool; events read from this log must not be used afterwards.
+    @Override
+    public synchronized void close () {
+        events.clear();
+        for (Chunk held : acquired) {
+            chunks.release(held.buffer);
+        }
+        acquired.clear();
+        chunk = null;
+    }
+}
@@ -1,22 +1,222 @@
 package com.lld.medium.kafka;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class KafkaCluster {
-    private List<Broker> brokers = new ArrayList<>();
+    public static final long DEFAULT_REPLICA_LAG_MAX_MS = 10_000;
+
+    private List<Broker> brokers = new CopyOnWriteArrayList<>();
+    private Map<String, Broker> brokersById = new ConcurrentHashMap<>();
+    private Zookeeper zookeeper;
+    private Map<String, Topic> topics = new HashMap<>();
+    // Written under the cluster lock; getLeader reads it without one.
+    private Map<String, List<PartitionReplicas>> assignments = new ConcurrentHashMap<>();
+    private long replicaLagMaxMs = DEFAULT_REPLICA_LAG_MAX_MS;
+    private ExecutorService metadataPublisher;
+
+    public KafkaCluster () {
+    }
+
+    // Publishes brokers, topics, partition leaders and ISR changes to the given Zookeeper.
+    // ISR changes are detected inside a leader's replica tracker, where taking the cluster lock
+    // would invert the lock order, so they are published from a dedicated thread instead.
+    public KafkaCluster ( Zookeeper zookeeper ) {
+        this.zookeeper = zookeeper;
+        this.metadataPublisher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable , "metadata-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     public void addBroker ( Broker broker ) {
         brokers.add(broker);
+        brokersById.put(broker.getId() , broker);
+        MetricsRegistry.getDefault().gauge("broker." + broker.getId() + ".online" , () -> broker.isOnline() ? 1 : 0);
+        if (zookeeper != null) {
+            zookeeper.registerBroker(broker);
+        }
     }
 
     public Broker getBroker ( String id ) {
+        return brokersById.get(id);
+    }
+
+    public void setReplicaLagMaxMs ( long replicaLagMaxMs ) {
+        this.replicaLagMaxMs = replicaLagMaxMs;
+    }
+
+    // Spreads partitionCount partitions over the online brokers, replicationFactor copies each.
+    // The first broker of each replica list leads; the rest start fetching from it. The returned
+    // Topic always holds the current leader replicas, so producers route to leaders.
+    public synchronized Topic createTopic ( String name , int partitionCount , int replicationFactor ) {
+        List<Broker> online = new ArrayList<>();
         for (Broker broker : brokers) {
-            if (broker.getId().equals(id)) {
-                return broker;
+            if (broker.isOnline()) {
+                online.add(broker);
+            }
+        }
+        if (replicationFactor < 1 || replicationFactor > online.size()) {
+            throw new IllegalArgumentException(
+                    "Replication factor " + replicationFactor + " needs that many online brokers, have " + online.size());
+        }
+        Topic topic = new Topic(name);
+        List<PartitionReplicas> partitions = new ArrayList<>(partitionCount);
+        for (int p = 0 ; p < partitionCount ; p++) {
+            PartitionReplicas replicas = new PartitionReplicas(p);
+            TopicPartitionState state = new TopicPartitionState();
+            for (int r = 0 ; r < replicationFactor ; r++) {
+                Broker broker = online.get((p + r) % online.size());
+                Partition replica = new Partition(p , state);
+                broker.addReplica(name , replica);
+                replicas.getReplicas().put(broker.getId() , replica);
+            }
+            Broker leader = online.get(p % online.size());
+            elect(topic , replicas , leader.getId() , false);
+            topic.addPartition(replicas.getLeader());
+            for (Partition replica : replicas.getReplicas().values()) {
+                if (replica != replicas.getLeader()) {
+                    topic.addFollower(replica);
+                }
             }
+            partitions.add(replicas);
         }
-        return null;
+        topics.put(name , topic);
+        assignments.put(name , partitions);
+        if (zookeeper != null) {
+            zookeeper.registerTopic(topic);
+            for (PartitionReplicas replicas : partitions) {
+                publish(name , replicas);
+            }
+        }
+        return topic;
+    }
+
+    // Takes a broker down. Partitions it led fail over to an in-sync follower when one exists,
+    // otherwise to any live replica (an unclean election that may lose unreplicated events).
+    public synchronized void shutdownBroker ( String brokerId ) {
+        Broker broker = getBroker(brokerId);
+        if (broker == null || !broker.isOnline()) {
+            return;
+        }
+        broker.setOnline(false);
+        for (Map.Entry<String, List<PartitionReplicas>> entry : assignments.entrySet()) {
+            Topic topic = topics.get(entry.getKey());
+            for (PartitionReplicas replicas : entry.getValue()) {
+                Partition replica = replicas.getReplicas().get(brokerId);
+                if (replica == null) {
+                    continue;
+                }
+                ReplicaFetcher fetcher = replicas.getFetchers().remove(brokerId);
+                if (fetcher != null) {
+                    fetcher.stop();
+                }
+                if (brokerId.equals(replicas.getLeaderId())) {
+                    String newLeader = chooseLeader(replicas , replica.getIsr());
+                    replica.goOffline();
+                    if (newLeader != null) {
+                        elect(topic , replicas , newLeader , true);
+                    }
+                } else {
+                    replica.goOffline();
+                }
+            }
+        }
+    }
+
+    // The in-sync replica with the longest log, so no event it acknowledged is lost; failing
+    // that, the live replica with the longest log. Followers truncate to their high watermark
+    // and re-fetch from whoever wins.
+    private String chooseLeader ( PartitionReplicas replicas , Set<String> isr ) {
+        String best = null;
+        long bestLogEnd = -1;
+        String fallback = null;
+        long fallbackLogEnd = -1;
+        for (Map.Entry<String, Partition> entry : replicas.getReplicas().entrySet()) {
+            String candidate = entry.getKey();
+            if (candidate.equals(replicas.getLeaderId()) || !getBroker(candidate).isOnline()) {
+                continue;
+            }
+            long logEnd = entry.getValue().getLogEndOffset();
+            if (isr.contains(candidate) && logEnd > bestLogEnd) {
+                best = candidate;
+                bestLogEnd = logEnd;
+            }
+            if (logEnd > fallbackLogEnd) {
+                fallback = candidate;
+                fallbackLogEnd = logEnd;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    private void elect ( Topic topic , PartitionReplicas replicas , String leaderId , boolean failover ) {
+        replicas.setLeaderId(leaderId);
+        Partition leader = replicas.getLeader();
+        ReplicaFetcher ownFetcher = replicas.getFetchers().remove(leaderId);
+        if (ownFetcher != null) {
+            ownFetcher.stop();
+        }
+        List<String> followers = new ArrayList<>();
+        for (Map.Entry<String, Partition> entry : replicas.getReplicas().entrySet()) {
+            String brokerId = entry.getKey();
+            if (!brokerId.equals(leaderId) && getBroker(brokerId).isOnline()) {
+                followers.add(brokerId);
+            }
+        }
+        leader.becomeLeader(leaderId , followers , replicaLagMaxMs , () -> publishLater(topic.getName() , replicas));
+        for (String followerId : followers) {
+            ReplicaFetcher fetcher = replicas.getFetchers().get(followerId);
+            if (fetcher != null) {
+                fetcher.setLeader(leader);
+                continue;
+            }
+            Partition replica = replicas.getReplicas().get(followerId);
+            replica.becomeFollower();
+            fetcher = new ReplicaFetcher(followerId , replica , leader);
+            replicas.getFetchers().put(followerId , fetcher);
+            Thread thread = new Thread(fetcher , "replica-fetcher-" + followerId + "-" + topic.getName() + "-"
+                    + replicas.getIndex());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (failover) {
+            topic.setPartition(replicas.getIndex() , leader);
+            publish(topic.getName() , replicas);
+        }
+    }
+
+    private void publishLater ( String topic , PartitionReplicas replicas ) {
+        if (zookeeper != null) {
+            metadataPublisher.execute(() -> {
+                synchronized (this) {
+                    publish(topic , replicas);
+                }
+            });
+        }
+    }
+
+    // Callers hold the cluster lock, so the replica set and leader are read consistently and
+    // publishes reach Zookeeper in the order the cluster changed.
+    private void publish ( String topic , PartitionReplicas replicas ) {
+        if (zookeeper != null) {
+            zookeeper.updatePartition(new PartitionMetadata(topic , replicas.getIndex() , replicas.getLeaderId() ,
+                                                            new ArrayList<>(replicas.getReplicas().keySet()) ,
+                                                            replicas.getLeader().getIsr()));
+        }
+    }
+
+    // Lock-free, so routing never waits behind a failover or topic creation.
+    public String getLeader ( String topic , int partition ) {
+        return assignments.get(topic).get(partition).getLeaderId();
     }
 
 }
@@ -0,0 +1,66 @@
+package com.lld.medium.kafka;
+
+import java.nio.charset.StandardCharsets;
+
+// Hashes Event.getId() with murmur2, so every event with the same key lands in the same
+// partition and keeps its relative order. Events without a key fall back to sticky placement.
+public class KeyPartitioner implements Partitioner {
+
+    private final StickyPartitioner keyless = new StickyPartitioner();
+
+    @Override
+    public int partition ( Topic topic , Event event ) {
+        if (event.getId() == null) {
+            return keyless.partition(topic , event);
+        }
+        byte[] key = event.getId().getBytes(StandardCharsets.UTF_8);
+        return (murmur2(key) & 0x7fffffff) % topic.getPartitionCount();
+    }
+
+    @Override
+    public void onNewBatch ( Topic topic , int previousPartition ) {
+        keyless.onNewBatch(topic , previousPartition);
+    }
+
+    @Override
+    public boolean isSticky ( Event event ) {
+        return event.getId() == null;
+    }
+
+    // The switch falls through on purpose: the 3-byte tail mixes in all three bytes, as in Kafka.
+    @SuppressWarnings("fallthrough")
+    static int murmur2 ( byte[] data ) {
+        int length = data.length;
+        int seed = 0x9747b28c;
+        int m = 0x5bd1e995;
+        int r = 24;
+        int h = seed ^ length;
+        int length4 = length / 4;
+
+        for (int i = 0 ; i < length4 ; i++) {
+            int i4 = i * 4;
+            int k = (data[i4] & 0xff) + ((data[i4 + 1] & 0xff) << 8) + ((data[i4 + 2] & 0xff) << 16)
+                    + ((data[i4 + 3] & 0xff) << 24);
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h *= m;
+            h ^= k;
+        }
+
+        switch (length % 4) {
+            case 3:
+                h ^= (data[(length & ~3) + 2] & 0xff) << 16;
+            case 2:
+                h ^= (data[(length & ~3) + 1] & 0xff) << 8;
+            case 1:
+                h ^= data[length & ~3] & 0xff;
+                h *= m;
+        }
+
+        h ^= h >>> 13;
+        h *= m;
+        h ^= h >>> 15;
+        return h;
+    }
+}
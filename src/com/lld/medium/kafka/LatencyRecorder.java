@@ -0,0 +1,41 @@
+package com.lld.medium.kafka;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Fixed-size sample buffer for benchmark latencies. Recording is one atomic increment and an
+// array store, so it adds no allocation to the path being measured; samples past the end are
+// counted but not kept.
+class LatencyRecorder {
+
+    private final long[] samples;
+    private final AtomicInteger count = new AtomicInteger();
+
+    LatencyRecorder ( int capacity ) {
+        this.samples = new long[capacity];
+    }
+
+    void record ( long nanos ) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = nanos;
+        }
+    }
+
+    int getCount () {
+        return count.get();
+    }
+
+    // Returns the requested percentiles (0..100) in nanoseconds.
+    long[] percentiles ( double... percentiles ) {
+        int size = Math.min(count.get() , samples.length);
+        long[] sorted = Arrays.copyOf(samples , size);
+        Arrays.sort(sorted);
+        long[] result = new long[percentiles.length];
+        for (int i = 0 ; i < percentiles.length && size > 0 ; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * size) - 1;
+            result[i] = sorted[Math.max(0 , Math.min(rank , size - 1))];
+        }
+        return result;
+    }
+}
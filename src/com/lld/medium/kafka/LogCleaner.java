@@ -0,0 +1,81 @@
+package com.lld.medium.kafka;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background thread that offloads cold segments to the remote tier and applies each registered
+// topic's RetentionPolicy, off the write path. Follower replicas are cleaned as well as leaders,
+// so a follower's disk stays bounded and a new leader does not inherit expired data.
+public class LogCleaner {
+
+    private final Set<Topic> topics = new CopyOnWriteArraySet<>();
+    private final Counter failedPasses = MetricsRegistry.getDefault().counter("log-cleaner.failed-passes");
+    private final Counter failedPartitions = MetricsRegistry.getDefault().counter("log-cleaner.failed-partitions");
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable , "log-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LogCleaner ( long intervalMs ) {
+        cleaner.scheduleWithFixedDelay(this::cleanSafely , intervalMs , intervalMs , TimeUnit.MILLISECONDS);
+    }
+
+    public void register ( Topic topic ) {
+        topics.add(topic);
+    }
+
+    public void unregister ( Topic topic ) {
+        topics.remove(topic);
+    }
+
+    // One full pass over every registered topic; returns the bytes freed. A partition that
+    // fails is counted and skipped, so it cannot hold back the partitions and topics after it.
+    public long clean () {
+        long freed = 0;
+        for (Topic topic : topics) {
+            RetentionPolicy policy = topic.getRetentionPolicy();
+            for (Partition partition : topic.getReplicas()) {
+                if (partition.isOffline()) {
+                    continue;
+                }
+                try {
+                    freed += clean(partition.getLog() , policy);
+                } catch (RuntimeException e) {
+                    failedPartitions.increment();
+                }
+            }
+        }
+        return freed;
+    }
+
+    private static long clean ( EventLog log , RetentionPolicy policy ) {
+        long freed = log.offload();
+        if (policy == null) {
+            return freed;
+        }
+        if (policy.isCompact() && log.supportsCompaction()) {
+            freed += log.compact();
+        }
+        if (policy.isDelete()) {
+            freed += log.applyRetention(policy.getRetentionMs() , policy.getRetentionBytes());
+        }
+        return freed;
+    }
+
+    // A failing pass must not cancel the schedule; it is counted and retried on the next tick.
+    private void cleanSafely () {
+        try {
+            clean();
+        } catch (RuntimeException e) {
+            failedPasses.increment();
+        }
+    }
+
+    public void close () {
+        cleaner.shutdown();
+    }
+}
@@ -0,0 +1,228 @@
+package com.lld.medium.kafka;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+class LogSegment {
+
+    static final String SUFFIX = ".log";
+
+    private final long baseOffset;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    // Sparse index: one entry roughly every indexIntervalBytes, pre-sized for a full segment
+    // so readers never see the arrays being replaced.
+    private final int indexIntervalBytes;
+    private final long[] indexOffsets;
+    private final int[] indexPositions;
+    private volatile int indexSize;
+    private int bytesSinceLastIndexEntry;
+
+    private volatile int size;
+    private volatile long nextOffset;
+    private volatile long maxTimestamp;
+
+    // The compressed batch most recently inflated by a read, so a consumer polling a few events
+    // at a time inflates each batch once rather than once per poll. The generation changes on
+    // truncation, which is the only way the bytes at a position can change.
+    private volatile InflatedBatch lastInflated;
+    private volatile int generation;
+
+    LogSegment ( Path dir , long baseOffset , int capacity , int indexIntervalBytes ) {
+        this.baseOffset = baseOffset;
+        this.file = dir.resolve(fileName(baseOffset));
+        this.capacity = capacity;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.indexOffsets = new long[capacity / indexIntervalBytes + 1];
+        this.indexPositions = new int[indexOffsets.length];
+        this.nextOffset = baseOffset;
+        try {
+            this.channel = FileChannel.open(file , StandardOpenOption.CREATE , StandardOpenOption.READ ,
+                                            StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE , 0 , capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open segment " + file , e);
+        }
+        recover();
+    }
+
+    static String fileName ( long baseOffset ) {
+        return String.format("%020d%s" , baseOffset , SUFFIX);
+    }
+
+    // Walks the batches already on disk to rebuild size, next offset and the sparse index.
+    // A zero length marks the pre-allocated tail; a length running past the end is a torn write.
+    private void recover () {
+        int position = 0;
+        while (position + RecordBatch.OVERHEAD <= capacity) {
+            int length = buffer.getInt(position);
+            if (length < RecordBatch.HEADER_SIZE || position + RecordBatch.LENGTH_SIZE + length > capacity) {
+                break;
+            }
+            long batchBaseOffset = buffer.getLong(position + RecordBatch.BASE_OFFSET);
+            maybeIndex(batchBaseOffset , position , RecordBatch.LENGTH_SIZE + length);
+            nextOffset = RecordBatch.nextOffset(buffer , position);
+            maxTimestamp = Math.max(maxTimestamp , buffer.getLong(position + RecordBatch.MAX_TIMESTAMP));
+            position += RecordBatch.LENGTH_SIZE + length;
+        }
+        size = position;
+    }
+
+    synchronized boolean append ( long offset , long timestamp , RecordBatch batch ) {
+        int batchSize = batch.sizeInBytes();
+        if (size + batchSize > capacity) {
+            return false;
+        }
+        ByteBuffer writer = buffer.duplicate();
+        writer.position(size);
+        batch.writeTo(writer , offset , timestamp);
+        maybeIndex(offset , size , batchSize);
+        nextOffset = offset + batch.lastOffsetDelta() + 1;
+        maxTimestamp = Math.max(maxTimestamp , timestamp);
+        size += batchSize;
+        return true;
+    }
+
+    // Cuts the segment back to the start of the batch holding offset. Only the length of the
+    // first dropped batch is zeroed: that is where recovery stops, and appends overwrite the rest.
+    synchronized void truncateTo ( long offset ) {
+        if (offset >= nextOffset) {
+            return;
+        }
+        int position = lookup(offset);
+        while (position < size && RecordBatch.nextOffset(buffer , position) <= offset) {
+            position += RecordBatch.LENGTH_SIZE + buffer.getInt(position);
+        }
+        if (position >= size) {
+            return;
+        }
+        nextOffset = position == 0 ? baseOffset : buffer.getLong(position + RecordBatch.BASE_OFFSET);
+        while (indexSize > 0 && indexPositions[indexSize - 1] >= position) {
+            indexSize--;
+        }
+        bytesSinceLastIndexEntry = indexIntervalBytes;
+        generation++;
+        lastInflated = null;
+        if (position + RecordBatch.LENGTH_SIZE <= capacity) {
+            buffer.putInt(position , 0);
+        }
+        size = position;
+    }
+
+    private void maybeIndex ( long offset , int position , int batchSize ) {
+        if (indexSize == 0 || bytesSinceLastIndexEntry >= indexIntervalBytes) {
+            indexOffsets[indexSize] = offset;
+            indexPositions[indexSize] = position;
+            indexSize++;
+            bytesSinceLastIndexEntry = 0;
+        }
+        bytesSinceLastIndexEntry += batchSize;
+    }
+
+    // Returns flyweight views straight over the mapping; no event is decoded or copied here.
+    int read ( long offset , int maxEvents , List<Event> out ) {
+        int limit = size;
+        int position = lookup(offset);
+        int added = 0;
+        while (position < limit && added < maxEvents) {
+            if (RecordBatch.nextOffset(buffer , position) > offset) {
+                byte[] records = RecordBatch.isCompressed(buffer , position) ? inflated(position) : null;
+                added += RecordBatch.read(buffer , position , offset , maxEvents - added , out , records);
+            }
+            position += RecordBatch.LENGTH_SIZE + buffer.getInt(position);
+        }
+        return added;
+    }
+
+    private byte[] inflated ( int position ) {
+        int current = generation;
+        InflatedBatch cached = lastInflated;
+        if (cached != null && cached.position == position && cached.generation == current) {
+            return cached.records;
+        }
+        byte[] records = RecordBatch.inflate(buffer , position);
+        lastInflated = new InflatedBatch(position , current , records);
+        return records;
+    }
+
+    private static final class InflatedBatch {
+        final int position;
+        final int generation;
+        final byte[] records;
+
+        InflatedBatch ( int position , int generation , byte[] records ) {
+            this.position = position;
+            this.generation = generation;
+            this.records = records;
+        }
+    }
+
+    private int lookup ( long offset ) {
+        int low = 0;
+        int high = indexSize - 1;
+        int position = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexOffsets[mid] <= offset) {
+                position = indexPositions[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return position;
+    }
+
+    void flush () {
+        buffer.force();
+    }
+
+    void close () {
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close segment " + file , e);
+        }
+    }
+
+    // Readers already holding the mapping keep working; the data goes away once they drop it.
+    void delete () {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to delete segment " + file , e);
+        }
+    }
+
+    long getBaseOffset () {
+        return baseOffset;
+    }
+
+    long getNextOffset () {
+        return nextOffset;
+    }
+
+    long getMaxTimestamp () {
+        return maxTimestamp;
+    }
+
+    int getSize () {
+        return size;
+    }
+
+    Path getFile () {
+        return file;
+    }
+}
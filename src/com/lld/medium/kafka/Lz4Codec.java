@@ -0,0 +1,141 @@
+package com.lld.medium.kafka;
+
+import java.util.Arrays;
+
+// Pure-Java encoder/decoder for the LZ4 block format: a greedy single-pass matcher over a
+// 4-byte hash table, no native library needed.
+class Lz4Codec implements CompressionCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xffff;
+    private static final int HASH_BITS = 12;
+
+    @Override
+    public byte getId () {
+        return 2;
+    }
+
+    @Override
+    public String getName () {
+        return "lz4";
+    }
+
+    @Override
+    public byte[] compress ( byte[] source , int offset , int length ) {
+        byte[] out = new byte[length + length / 255 + 16];
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table , -1);
+        int end = offset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int anchor = offset;
+        int position = offset;
+        int written = 0;
+
+        while (position < end - MATCH_FIND_LIMIT) {
+            int hash = hash(readInt(source , position));
+            int candidate = table[hash];
+            table[hash] = position;
+            if (candidate < 0 || position - candidate > MAX_DISTANCE
+                    || readInt(source , candidate) != readInt(source , position)) {
+                position++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < matchLimit
+                    && source[candidate + matchLength] == source[position + matchLength]) {
+                matchLength++;
+            }
+            written = writeSequence(out , written , source , anchor , position - anchor , position - candidate ,
+                                    matchLength);
+            position += matchLength;
+            anchor = position;
+        }
+        written = writeLiterals(out , written , source , anchor , end - anchor);
+        return Arrays.copyOf(out , written);
+    }
+
+    private static int writeSequence ( byte[] out , int written , byte[] source , int literalStart , int literalLength ,
+                                       int distance , int matchLength ) {
+        int token = written++;
+        int matchCode = matchLength - MIN_MATCH;
+        out[token] = (byte) ((Math.min(literalLength , 15) << 4) | Math.min(matchCode , 15));
+        written = writeLength(out , written , literalLength);
+        System.arraycopy(source , literalStart , out , written , literalLength);
+        written += literalLength;
+        out[written++] = (byte) distance;
+        out[written++] = (byte) (distance >>> 8);
+        return writeLength(out , written , matchCode);
+    }
+
+    private static int writeLiterals ( byte[] out , int written , byte[] source , int literalStart , int literalLength ) {
+        out[written++] = (byte) (Math.min(literalLength , 15) << 4);
+        written = writeLength(out , written , literalLength);
+        System.arraycopy(source , literalStart , out , written , literalLength);
+        return written + literalLength;
+    }
+
+    // Lengths of 15 and above spill into extra bytes of 255 terminated by one below 255.
+    private static int writeLength ( byte[] out , int written , int length ) {
+        if (length < 15) {
+            return written;
+        }
+        length -= 15;
+        while (length >= 255) {
+            out[written++] = (byte) 255;
+            length -= 255;
+        }
+        out[written++] = (byte) length;
+        return written;
+    }
+
+    @Override
+    public void decompress ( byte[] source , int offset , int length , byte[] destination ) {
+        int position = offset;
+        int end = offset + length;
+        int written = 0;
+        while (position < end) {
+            int token = source[position++] & 0xff;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int b;
+                do {
+                    b = source[position++] & 0xff;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            System.arraycopy(source , position , destination , written , literalLength);
+            position += literalLength;
+            written += literalLength;
+            if (position >= end) {
+                break;
+            }
+            int distance = (source[position] & 0xff) | ((source[position + 1] & 0xff) << 8);
+            position += 2;
+            int matchLength = token & 0x0f;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    b = source[position++] & 0xff;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            // Byte-by-byte so overlapping matches (distance < length) repeat correctly.
+            int from = written - distance;
+            for (int i = 0 ; i < matchLength ; i++) {
+                destination[written++] = destination[from + i];
+            }
+        }
+    }
+
+    private static int readInt ( byte[] source , int position ) {
+        return (source[position] & 0xff) | ((source[position + 1] & 0xff) << 8)
+                | ((source[position + 2] & 0xff) << 16) | ((source[position + 3] & 0xff) << 24);
+    }
+
+    private static int hash ( int value ) {
+        return (value * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -48,5 +48,7 @@ public class Main {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+
+        System.out.print(MetricsRegistry.getDefault().toText());
     }
 }
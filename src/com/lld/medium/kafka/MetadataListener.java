@@ -0,0 +1,7 @@
+package com.lld.medium.kafka;
+
+public interface MetadataListener {
+
+    // Called on the publishing thread after every change; keep it short.
+    void onChange ( ClusterMetadata previous , ClusterMetadata current );
+}
@@ -0,0 +1,43 @@
+package com.lld.medium.kafka;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Pull endpoint for scrapers: GET /metrics returns the registry as "name value" lines.
+public class MetricsHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    public MetricsHttpServer ( MetricsRegistry registry , int port ) {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(port) , 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to bind metrics endpoint on port " + port , e);
+        }
+        server.createContext("/metrics" , exchange -> respond(exchange , registry.toText()));
+        server.start();
+    }
+
+    private static void respond ( HttpExchange exchange , String text ) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type" , "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200 , body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public int getPort () {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close () {
+        server.stop(0);
+    }
+}
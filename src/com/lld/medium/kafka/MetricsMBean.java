@@ -0,0 +1,81 @@
+package com.lld.medium.kafka;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+// Read-only JMX view of a registry: every entry of snapshot() is a long attribute. The
+// attribute list is rebuilt on each getMBeanInfo(), so metrics registered later show up too.
+public class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    public MetricsMBean ( MetricsRegistry registry ) {
+        this.registry = registry;
+    }
+
+    public static ObjectName register ( MetricsRegistry registry , String name ) {
+        try {
+            ObjectName objectName = new ObjectName("com.lld.medium.kafka:type=Metrics,name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(registry) , objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics MBean " + name , e);
+        }
+    }
+
+    @Override
+    public Object getAttribute ( String attribute ) throws AttributeNotFoundException {
+        Long value = registry.snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes ( String[] attributes ) {
+        Map<String, Long> snapshot = registry.snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Long value = snapshot.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute , value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute ( Attribute attribute ) {
+        throw new UnsupportedOperationException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes ( AttributeList attributes ) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke ( String actionName , Object[] params , String[] signature ) {
+        throw new UnsupportedOperationException("Metrics have no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo () {
+        Map<String, Long> snapshot = registry.snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int i = 0;
+        for (String name : snapshot.keySet()) {
+            attributes[i++] = new MBeanAttributeInfo(name , "long" , name , true , false , false);
+        }
+        return new MBeanInfo(getClass().getName() , "Event pipeline metrics" , attributes , null , null , null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.lld.medium.kafka;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Named counters, histograms and gauges. Components keep direct references to the metrics
+// they update, so the registry is only consulted when a metric is created or read out.
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getDefault () {
+        return DEFAULT;
+    }
+
+    public Counter counter ( String name ) {
+        return counters.computeIfAbsent(name , key -> new Counter());
+    }
+
+    public Histogram histogram ( String name ) {
+        return histograms.computeIfAbsent(name , key -> new Histogram());
+    }
+
+    // Registers an existing metric under name, replacing whatever was registered there before.
+    public void register ( String name , Counter counter ) {
+        counters.put(name , counter);
+    }
+
+    public void register ( String name , Histogram histogram ) {
+        histograms.put(name , histogram);
+    }
+
+    public void gauge ( String name , LongSupplier value ) {
+        gauges.put(name , value);
+    }
+
+    public void remove ( String name ) {
+        counters.remove(name);
+        histograms.remove(name);
+        gauges.remove(name);
+    }
+
+    // Removes name only while metric is still what is registered there, so a component
+    // unregistering late cannot drop the metric that replaced it under the same name.
+    public void remove ( String name , Object metric ) {
+        counters.remove(name , metric);
+        histograms.remove(name , metric);
+        gauges.remove(name , metric);
+    }
+
+    // Point-in-time values of every metric, sorted by name. Histograms expand into
+    // count, max and p50/p99/p999 entries.
+    public SortedMap<String, Long> snapshot () {
+        SortedMap<String, Long> values = new TreeMap<>();
+        counters.forEach(( name , counter ) -> values.put(name , counter.get()));
+        gauges.forEach(( name , gauge ) -> values.put(name , gauge.getAsLong()));
+        histograms.forEach(( name , histogram ) -> {
+            values.put(name + ".count" , histogram.getCount());
+            values.put(name + ".max" , histogram.getMax());
+            values.put(name + ".p50" , histogram.percentile(50));
+            values.put(name + ".p99" , histogram.percentile(99));
+            values.put(name + ".p999" , histogram.percentile(99.9));
+        });
+        return values;
+    }
+
+    // One "name value" line per entry of snapshot().
+    public String toText () {
+        StringBuilder text = new StringBuilder();
+        snapshot().forEach(( name , value ) -> text.append(name).append(' ').append(value).append('\n'));
+        return text.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.lld.medium.kafka;
+
+import java.nio.file.Path;
+import java.util.List;
+
+// Minimal blob store the remote log tier is written against. Keys are '/'-separated paths;
+// objects are written whole and never modified in place.
+public interface ObjectStore {
+
+    // Stores the first length bytes of source under key.
+    void upload ( String key , Path source , long length );
+
+    void download ( String key , Path target );
+
+    void put ( String key , byte[] data );
+
+    byte[] get ( String key );
+
+    void delete ( String key );
+
+    // Keys starting with prefix, in lexicographic order.
+    List<String> list ( String prefix );
+}
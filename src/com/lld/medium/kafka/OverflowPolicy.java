@@ -0,0 +1,8 @@
+package com.lld.medium.kafka;
+
+// What a ServerChannel does with an event when the server already has its maximum in flight.
+public enum OverflowPolicy {
+    BLOCK,  // wait for the server to catch up, pushing back on the consumer
+    DROP,   // discard the event for this server only
+    SPILL   // park it in an unbounded overflow buffer behind the in-flight queue
+}
@@ -1,27 +1,630 @@
 package com.lld.medium.kafka;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
 public class Partition {
 
+    private static final AtomicLong NEXT_UID = new AtomicLong();
+    // Control events written when a transaction ends; their data is "baseOffset:count" of the
+    // transaction's events in this partition. Never returned to consumers.
+    static final String COMMIT_MARKER = "__transaction_commit";
+    static final String ABORT_MARKER = "__transaction_abort";
+    private static final int RECOVERY_BATCH_EVENTS = 1000;
+    // Expires replication waiters and re-checks follower lag while any are pending.
+    private static final ScheduledExecutorService REPLICATION_TIMER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable , "replication-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private int id;
-    private EventQueue events = new EventQueue();
+    private final long uid = NEXT_UID.getAndIncrement();
+    // Only for the legacy queue-draining EventConsumer: null until one attaches through
+    // getEvents(), so partitions read by offset never hold every event a second time on the heap.
+    // It is fed committed events only, up to the last stable offset, from queuedOffset on.
+    private volatile EventQueue events;
+    private final Object queueFeedLock = new Object();
+    private long queuedOffset;
+    private EventLog log;
+    // Group offsets and producer sequences, shared by every replica of this topic-partition.
+    private final TopicPartitionState state;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final AtomicInteger readersWaiting = new AtomicInteger();
+
+    // Replication role: a leader tracks its followers, a follower only accepts replicated batches.
+    private volatile ReplicaTracker leaderState;
+    private volatile boolean follower;
+    private volatile long replicatedHighWatermark;
+    private volatile boolean offline;
+    // acks=ALL produces waiting for the high watermark to pass their offset.
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Long>> replicationWaiters = new ConcurrentSkipListMap<>();
+    private ScheduledFuture<?> lagCheck;
+
+    private final ReentrantLock transactionLock = new ReentrantLock();
+    // While a transaction is being written, consumers read no further than where it started
+    // (the last stable offset); -1 when none is open. Aborted transactions are remembered as
+    // baseOffset -> endOffset ranges and skipped.
+    private volatile long openTransactionStart = -1;
+    private final ConcurrentSkipListMap<Long, Long> abortedRanges = new ConcurrentSkipListMap<>();
 
+    private final Counter eventsIn = new Counter();
+    private final Counter bytesIn = new Counter();
+    private final Counter bytesOut = new Counter();
+    private volatile MetricsRegistry metrics;
+    private volatile String metricsPrefix;
+    // Everything put into the registry, so it can be taken out again on close.
+    private final Map<String, Object> registeredMetrics = new ConcurrentHashMap<>();
 
     public Partition ( int id ) {
+        this(id , new InMemoryEventLog());
+    }
+
+    public Partition ( int id , EventLog log ) {
+        this(id , log , null);
+    }
+
+    public Partition ( int id , EventLog log , EventQueue events ) {
+        this(id , log , events , new TopicPartitionState());
+    }
+
+    // A replica of a clustered partition, sharing state with the partition's other replicas.
+    Partition ( int id , TopicPartitionState state ) {
+        this(id , new InMemoryEventLog() , null , state);
+    }
+
+    private Partition ( int id , EventLog log , EventQueue events , TopicPartitionState state ) {
         this.id = id;
+        this.log = log;
+        this.events = events;
+        this.state = state;
+        this.queuedOffset = log.getLogEndOffset();
+        recoverAborts();
+    }
+
+    // Aborted ranges are only held in memory, so reopening an existing log rebuilds them from
+    // its abort markers; otherwise aborted events would become visible after a restart.
+    private void recoverAborts () {
+        long next = log.getLogStartOffset();
+        long end = log.getLogEndOffset();
+        while (next < end) {
+            List<Event> chunk = log.read(next , RECOVERY_BATCH_EVENTS);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            trackAborts(chunk);
+            next = chunk.get(chunk.size() - 1).getOffset() + 1;
+        }
+    }
+
+    public long addEvent ( Event event ) {
+        checkWritable();
+        checkNotControl(event);
+        long offset = log.append(event);
+        eventsIn.increment();
+        bytesIn.add(event.sizeInBytes());
+        onAppend();
+        return offset;
+    }
+
+    // Appends the events as one batch: a single log write and a single consumer wakeup.
+    public long addEvents ( List<Event> batch ) {
+        checkWritable();
+        for (Event event : batch) {
+            checkNotControl(event);
+        }
+        long baseOffset = log.append(batch);
+        eventsIn.add(batch.size());
+        bytesIn.add(sizeInBytes(batch));
+        onAppend();
+        return baseOffset;
+    }
+
+    // Marker types are reserved: a producer-written abort marker could hide other producers' data.
+    private static void checkNotControl ( Event event ) {
+        if (COMMIT_MARKER.equals(event.getType()) || ABORT_MARKER.equals(event.getType())) {
+            throw new IllegalArgumentException("Event type " + event.getType() + " is reserved for transaction markers");
+        }
+    }
+
+    // Hands newly committed events, with their offsets, to an attached queue consumer. Runs
+    // whenever the last stable offset may have moved, so transactional events reach the queue
+    // only once committed and aborted ones never do.
+    private void feedQueue () {
+        if (events == null) {
+            return;
+        }
+        synchronized (queueFeedLock) {
+            EventQueue queue = events;
+            List<Event> committed = new ArrayList<>();
+            long next = readCommitted(queuedOffset , Integer.MAX_VALUE , committed);
+            queuedOffset = next;
+            if (!committed.isEmpty()) {
+                queue.addEvents(committed);
+            }
+        }
+    }
+
+    // Idempotent append: a retried batch (same producer, same sequences) is not written twice
+    // and gets the offset of the original write back.
+    public long addEvents ( long producerId , int baseSequence , List<Event> batch ) {
+        checkWritable();
+        return state.getProducer(producerId).append(baseSequence , batch , this::addEvents);
+    }
+
+    private static long sizeInBytes ( List<Event> batch ) {
+        long bytes = 0;
+        for (Event event : batch) {
+            bytes += event.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public boolean isWritable () {
+        return !offline && !follower;
     }
 
-    public void addEvent ( Event event ) {
-        events.addEvent(event);
+    private void checkWritable () {
+        if (offline) {
+            throw new IllegalStateException("Partition " + id + " is offline");
+        }
+        if (follower) {
+            throw new IllegalStateException("Partition " + id + " is a follower replica");
+        }
+    }
+
+    private void onAppend () {
+        ReplicaTracker tracker = leaderState;
+        if (tracker != null && tracker.update()) {
+            completeReplicated();
+        }
+        signalAppended();
+    }
+
+    private void signalAppended () {
+        feedQueue();
+        if (readersWaiting.get() > 0) {
+            appendLock.lock();
+            try {
+                appended.signalAll();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+
+    // Blocks until a committed event exists at or beyond offset, or the timeout expires.
+    public boolean awaitData ( long offset , long timeoutMs ) {
+        return await(offset , timeoutMs , true);
+    }
+
+    private boolean await ( long offset , long timeoutMs , boolean committedOnly ) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        appendLock.lock();
+        readersWaiting.incrementAndGet();
+        try {
+            while ((committedOnly ? getLastStableOffset() : log.getLogEndOffset()) <= offset) {
+                if (remaining <= 0 || offline) {
+                    return false;
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            readersWaiting.decrementAndGet();
+            appendLock.unlock();
+        }
+    }
+
+    // Used by acks=ALL producers: waits until every in-sync replica holds offset. Wakes up
+    // periodically so a follower that stopped fetching is dropped from the ISR instead of
+    // holding the producer until the timeout.
+    public boolean awaitReplication ( long offset , long timeoutMs ) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        ReplicaTracker tracker = leaderState;
+        long slice = tracker == null ? timeoutMs : Math.max(1 , tracker.getReplicaLagMaxMs() / 2);
+        while (getHighWatermark() <= offset) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0 || offline) {
+                return false;
+            }
+            if (tracker != null && tracker.update()) {
+                completeReplicated();
+                signalAppended();
+            }
+            await(offset , Math.min(slice , remainingMs) , true);
+        }
+        return true;
+    }
+
+    // Non-blocking form of awaitReplication: completes with offset once every in-sync replica
+    // holds it, from whichever thread moves the high watermark past it, or fails after timeoutMs.
+    public CompletableFuture<Long> replicated ( long offset , long timeoutMs ) {
+        if (getHighWatermark() > offset) {
+            return CompletableFuture.completedFuture(offset);
+        }
+        CompletableFuture<Long> future = replicationWaiters.computeIfAbsent(offset , key -> new CompletableFuture<>());
+        startLagCheck();
+        REPLICATION_TIMER.schedule(() -> {
+            if (replicationWaiters.remove(offset , future)) {
+                future.completeExceptionally(new IllegalStateException(
+                        "Offset " + offset + " of partition " + id + " was not replicated within " + timeoutMs + " ms"));
+            }
+        } , timeoutMs , TimeUnit.MILLISECONDS);
+        // The watermark may have moved while the waiter was being registered.
+        completeReplicated();
+        return future;
+    }
+
+    private void completeReplicated () {
+        if (replicationWaiters.isEmpty()) {
+            return;
+        }
+        Map<Long, CompletableFuture<Long>> done = replicationWaiters.headMap(getHighWatermark());
+        for (Long offset : done.keySet()) {
+            CompletableFuture<Long> future = done.remove(offset);
+            if (future != null) {
+                future.complete(offset);
+            }
+        }
+    }
+
+    // Without new appends or fetches nothing would drop a stalled follower from the ISR, so
+    // the lag is re-checked periodically while waiters exist.
+    private synchronized void startLagCheck () {
+        ReplicaTracker tracker = leaderState;
+        if (lagCheck != null || tracker == null) {
+            return;
+        }
+        long period = Math.max(1 , tracker.getReplicaLagMaxMs() / 2);
+        lagCheck = REPLICATION_TIMER.scheduleAtFixedRate(() -> {
+            ReplicaTracker current = leaderState;
+            if (!replicationWaiters.isEmpty() && current != null && current.update()) {
+                completeReplicated();
+                signalAppended();
+            }
+        } , period , period , TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopLagCheck () {
+        if (lagCheck != null) {
+            lagCheck.cancel(false);
+            lagCheck = null;
+        }
+    }
+
+    private void failReplicationWaiters ( String reason ) {
+        for (Long offset : replicationWaiters.keySet()) {
+            CompletableFuture<Long> future = replicationWaiters.remove(offset);
+            if (future != null) {
+                future.completeExceptionally(new IllegalStateException("Partition " + id + " " + reason));
+            }
+        }
     }
 
     public Event getNextEvent () {
-        return events.getNextEvent();
+        return getEvents().getNextEvent();
+    }
+
+    // Non-destructive: the same offset can be read by any number of consumer groups.
+    // Only committed events (below the last stable offset, outside aborted transactions) are
+    // returned.
+    public List<Event> read ( long offset , int maxEvents ) {
+        List<Event> result = new ArrayList<>();
+        readCommitted(offset , maxEvents , result);
+        return result;
+    }
+
+    // Adds up to maxEvents visible events to out and returns the offset to continue from, which
+    // is past any transaction markers and aborted events that were skipped. The only place
+    // bytes-out is counted, so every consumer read is counted exactly once.
+    private long readCommitted ( long offset , int maxEvents , List<Event> out ) {
+        long stableOffset = getLastStableOffset();
+        long next = Math.max(offset , log.getLogStartOffset());
+        int added = 0;
+        while (added < maxEvents && next < stableOffset) {
+            List<Event> chunk = log.read(next , maxEvents - added);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            for (Event event : chunk) {
+                if (event.getOffset() >= stableOffset) {
+                    break;
+                }
+                next = event.getOffset() + 1;
+                if (isVisible(event)) {
+                    out.add(event);
+                    bytesOut.add(event.sizeInBytes());
+                    added++;
+                }
+            }
+            if (chunk.get(chunk.size() - 1).getOffset() >= stableOffset) {
+                break;
+            }
+        }
+        return Math.max(next , offset);
     }
 
+    private boolean isVisible ( Event event ) {
+        if (event.getId() == null && (COMMIT_MARKER.equals(event.getType()) || ABORT_MARKER.equals(event.getType()))) {
+            return false;
+        }
+        Map.Entry<Long, Long> aborted = abortedRanges.floorEntry(event.getOffset());
+        return aborted == null || event.getOffset() >= aborted.getValue();
+    }
 
-    public EventQueue getEvents () {
+    // High watermark, held back to the start of a transaction that is still being written.
+    public long getLastStableOffset () {
+        long highWatermark = getHighWatermark();
+        long start = openTransactionStart;
+        return start < 0 ? highWatermark : Math.min(highWatermark , start);
+    }
+
+    // Called by Transaction.commit with the transaction lock held, before the partition's share
+    // is written: everything from the current log end stays invisible until the transaction ends.
+    void beginTransactionalWrite () {
+        openTransactionStart = log.getLogEndOffset();
+    }
+
+    // Ends the open transaction. An aborted share is hidden before its marker is written, and
+    // the hold on the last stable offset is released even if the marker cannot be written.
+    void endTransactionalWrite ( long baseOffset , int count , boolean commit ) {
+        try {
+            if (count > 0) {
+                if (!commit) {
+                    abortedRanges.put(baseOffset , baseOffset + count);
+                }
+                log.append(new Event(null , commit ? COMMIT_MARKER : ABORT_MARKER , baseOffset + ":" + count));
+            }
+        } finally {
+            openTransactionStart = -1;
+            onAppend();
+        }
+    }
+
+    // Followers learn about aborted transactions from the markers they replicate.
+    private void trackAborts ( List<Event> batch ) {
+        for (Event event : batch) {
+            if (event.getId() == null && ABORT_MARKER.equals(event.getType())) {
+                String[] range = event.getData().split(":");
+                long baseOffset = Long.parseLong(range[0]);
+                abortedRanges.put(baseOffset , baseOffset + Integer.parseInt(range[1]));
+            }
+        }
+    }
+
+    // Long poll: returns once at least minBytes (or maxEvents) have built up past offset, or
+    // when maxWaitMs runs out with whatever is there. Each wakeup only reads the new tail.
+    public FetchResult fetch ( long offset , int minBytes , long maxWaitMs , int maxEvents ) {
+        return fetch(offset , minBytes , maxWaitMs , maxEvents , true);
+    }
+
+    // Follower fetches also report progress: fetching at offset means the follower has
+    // everything below it, which may advance the high watermark.
+    FetchResult fetchForReplica ( String replicaId , long offset , int minBytes , long maxWaitMs , int maxEvents ) {
+        ReplicaTracker tracker = leaderState;
+        if (offline || tracker == null) {
+            throw new IllegalStateException("Partition " + id + " is not a leader");
+        }
+        if (tracker.onFollowerFetch(replicaId , offset)) {
+            completeReplicated();
+            signalAppended();
+        }
+        return fetch(offset , minBytes , maxWaitMs , maxEvents , false);
+    }
+
+    private FetchResult fetch ( long offset , int minBytes , long maxWaitMs , int maxEvents , boolean committedOnly ) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        List<Event> fetched = new ArrayList<>();
+        long nextOffset = Math.max(offset , log.getLogStartOffset());
+        int bytes = 0;
+        while (true) {
+            int before = fetched.size();
+            if (committedOnly) {
+                nextOffset = readCommitted(nextOffset , maxEvents - fetched.size() , fetched);
+            } else {
+                for (Event event : log.read(nextOffset , maxEvents - fetched.size())) {
+                    fetched.add(event);
+                    nextOffset = event.getOffset() + 1;
+                }
+            }
+            for (int i = before ; i < fetched.size() ; i++) {
+                bytes += fetched.get(i).sizeInBytes();
+            }
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (bytes >= minBytes || fetched.size() >= maxEvents || remainingMs <= 0
+                    || !await(nextOffset , remainingMs , committedOnly)) {
+                return new FetchResult(fetched , nextOffset , log.getLogEndOffset() , getHighWatermark() , bytes);
+            }
+        }
+    }
+
+    // Follower side of replication: events arrive in leader order and keep their offsets.
+    void appendReplicated ( List<Event> batch , long leaderHighWatermark ) {
+        if (!batch.isEmpty()) {
+            log.append(batch);
+            trackAborts(batch);
+        }
+        replicatedHighWatermark = leaderHighWatermark;
+        signalAppended();
+    }
+
+    void becomeLeader ( String brokerId , Collection<String> followerIds , long replicaLagMaxMs ,
+                        Runnable onIsrChange ) {
+        long highWatermark = getHighWatermark();
+        state.onLeaderChange(log.getLogEndOffset());
+        follower = false;
+        leaderState = new ReplicaTracker(brokerId , followerIds , replicaLagMaxMs , log::getLogEndOffset ,
+                                         highWatermark , onIsrChange);
+        leaderState.update();
+        stopLagCheck();
+    }
+
+    // Keeps the high watermark it had as a leader; everything above it is truncated by the
+    // fetcher before it fetches from the new leader.
+    void becomeFollower () {
+        replicatedHighWatermark = getHighWatermark();
+        leaderState = null;
+        follower = true;
+        stopLagCheck();
+        failReplicationWaiters("is no longer the leader");
+    }
+
+    // Follower side of a leader change: events above the high watermark may never have reached
+    // the new leader, which will reuse their offsets, so they are dropped and fetched again.
+    void truncateToHighWatermark () {
+        log.truncateTo(getHighWatermark());
+    }
+
+    void goOffline () {
+        offline = true;
+        stopLagCheck();
+        failReplicationWaiters("is offline");
+        signalAppended();
+    }
+
+    public boolean isOffline () {
+        return offline;
+    }
+
+    public long getHighWatermark () {
+        ReplicaTracker tracker = leaderState;
+        if (tracker != null) {
+            return tracker.getHighWatermark();
+        }
+        if (follower) {
+            return Math.min(replicatedHighWatermark , log.getLogEndOffset());
+        }
+        return log.getLogEndOffset();
+    }
+
+    public Set<String> getIsr () {
+        ReplicaTracker tracker = leaderState;
+        return tracker == null ? Collections.emptySet() : tracker.getIsr();
+    }
+
+    public void commitOffset ( String groupId , long offset ) {
+        if (state.getCommittedOffsets().put(groupId , offset) == null) {
+            registerLag(groupId);
+        }
+    }
+
+    // Publishes this partition's metrics under prefix: traffic counters, log end offset, high
+    // watermark, queue depth and the lag of every consumer group that commits here.
+    synchronized void registerMetrics ( MetricsRegistry registry , String prefix ) {
+        unregisterMetrics();
+        this.metricsPrefix = prefix;
+        this.metrics = registry;
+        register(prefix + ".events-in" , eventsIn);
+        register(prefix + ".bytes-in" , bytesIn);
+        register(prefix + ".bytes-out" , bytesOut);
+        gauge(prefix + ".log-end-offset" , this::getLogEndOffset);
+        gauge(prefix + ".high-watermark" , this::getHighWatermark);
+        gauge(prefix + ".queue-depth" , () -> {
+            EventQueue queue = events;
+            return queue == null ? 0 : queue.size();
+        });
+        for (String groupId : state.getCommittedOffsets().keySet()) {
+            registerLag(groupId);
+        }
+    }
+
+    private synchronized void registerLag ( String groupId ) {
+        if (metrics != null) {
+            gauge(metricsPrefix + ".lag." + groupId , () -> Math.max(0 , getHighWatermark() - getCommittedOffset(groupId)));
+        }
+    }
+
+    private void register ( String name , Counter counter ) {
+        metrics.register(name , counter);
+        registeredMetrics.put(name , counter);
+    }
+
+    private void gauge ( String name , LongSupplier value ) {
+        metrics.gauge(name , value);
+        registeredMetrics.put(name , value);
+    }
+
+    // The registry is usually the static default one, whose gauges would otherwise keep this
+    // partition reachable for good.
+    synchronized void unregisterMetrics () {
+        MetricsRegistry registry = metrics;
+        if (registry != null) {
+            registeredMetrics.forEach(registry::remove);
+        }
+        registeredMetrics.clear();
+        metrics = null;
+        metricsPrefix = null;
+    }
+
+    // Takes the partition out of service: its metrics are unregistered and its log closed.
+    public void close () {
+        goOffline();
+        unregisterMetrics();
+        log.close();
+    }
+
+    // Offset of the next event the group should read; new groups start at the beginning of the log.
+    public long getCommittedOffset ( String groupId ) {
+        return state.getCommittedOffsets().getOrDefault(groupId , log.getLogStartOffset());
+    }
+
+    public long getLogEndOffset () {
+        return log.getLogEndOffset();
+    }
+
+
+    public void setCompression ( CompressionCodec compression ) {
+        log.setCompression(compression);
+    }
+
+    // Attaches a queue on first use; it receives events committed from then on.
+    public synchronized EventQueue getEvents () {
+        if (events == null) {
+            synchronized (queueFeedLock) {
+                queuedOffset = log.getLogEndOffset();
+                events = new EventQueue();
+            }
+        }
         return events;
     }
 
+    public EventLog getLog () {
+        return log;
+    }
+
+    public int getId () {
+        return id;
+    }
+
+    // Taken by transactional commits, always in uid order, so two commits never interleave.
+    ReentrantLock getTransactionLock () {
+        return transactionLock;
+    }
+
+    long getUid () {
+        return uid;
+    }
 
 }
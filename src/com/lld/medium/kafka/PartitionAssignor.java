@@ -0,0 +1,10 @@
+package com.lld.medium.kafka;
+
+import java.util.List;
+import java.util.Map;
+
+public interface PartitionAssignor {
+
+    // Maps every member id to the partitions it owns; each partition goes to exactly one member.
+    Map<String, List<Partition>> assign ( List<String> memberIds , Topic topic );
+}
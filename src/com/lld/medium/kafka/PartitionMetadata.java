@@ -0,0 +1,44 @@
+package com.lld.medium.kafka;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public final class PartitionMetadata {
+
+    private final String topic;
+    private final int partition;
+    private final String leaderId;
+    private final List<String> replicas;
+    private final Set<String> isr;
+
+    public PartitionMetadata ( String topic , int partition , String leaderId , List<String> replicas ,
+                               Set<String> isr ) {
+        this.topic = topic;
+        this.partition = partition;
+        this.leaderId = leaderId;
+        this.replicas = List.copyOf(replicas);
+        this.isr = Collections.unmodifiableSet(new TreeSet<>(isr));
+    }
+
+    public String getTopic () {
+        return topic;
+    }
+
+    public int getPartition () {
+        return partition;
+    }
+
+    public String getLeaderId () {
+        return leaderId;
+    }
+
+    public List<String> getReplicas () {
+        return replicas;
+    }
+
+    public Set<String> getIsr () {
+        return isr;
+    }
+}
@@ -0,0 +1,43 @@
+package com.lld.medium.kafka;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cluster-side bookkeeping for one partition: which broker holds which replica, who leads,
+// and the fetcher thread each follower runs against the leader. Only the leader id is read
+// outside the cluster lock.
+class PartitionReplicas {
+
+    private final int index;
+    private final Map<String, Partition> replicas = new LinkedHashMap<>();
+    private final Map<String, ReplicaFetcher> fetchers = new LinkedHashMap<>();
+    private volatile String leaderId;
+
+    PartitionReplicas ( int index ) {
+        this.index = index;
+    }
+
+    int getIndex () {
+        return index;
+    }
+
+    Map<String, Partition> getReplicas () {
+        return replicas;
+    }
+
+    Map<String, ReplicaFetcher> getFetchers () {
+        return fetchers;
+    }
+
+    String getLeaderId () {
+        return leaderId;
+    }
+
+    void setLeaderId ( String leaderId ) {
+        this.leaderId = leaderId;
+    }
+
+    Partition getLeader () {
+        return replicas.get(leaderId);
+    }
+}
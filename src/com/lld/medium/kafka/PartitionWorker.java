@@ -0,0 +1,119 @@
+package com.lld.medium.kafka;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Reads one partition on behalf of a consumer group member, committing after each batch.
+// A handler failure is counted and then retried or skipped per the group's policy, so one
+// bad event never kills the worker thread. When the replica it reads goes offline the worker
+// switches to whichever replica the topic now lists as leader for that partition.
+class PartitionWorker implements Runnable {
+
+    private static final int MAX_POLL_EVENTS = 500;
+    private static final int MIN_FETCH_BYTES = 1;
+    private static final long MAX_FETCH_WAIT_MS = 100;
+    private static final long RETRY_BACKOFF_MS = 100;
+
+    private final String groupId;
+    private final Topic topic;
+    private Partition partition;
+    private final Consumer<Event> handler;
+    private final HandlerFailurePolicy failurePolicy;
+    private final Counter failed;
+    private final List<Thread> predecessors;
+    private volatile boolean running = true;
+
+    PartitionWorker ( String groupId , Topic topic , Partition partition , Consumer<Event> handler ,
+                      HandlerFailurePolicy failurePolicy , Counter failed , List<Thread> predecessors ) {
+        this.groupId = groupId;
+        this.topic = topic;
+        this.partition = partition;
+        this.handler = handler;
+        this.failurePolicy = failurePolicy;
+        this.failed = failed;
+        this.predecessors = predecessors;
+    }
+
+    @Override
+    public void run () {
+        // Workers from the previous generation may still be finishing a batch; starting before
+        // they commit would hand the same events to two handlers.
+        for (Thread predecessor : predecessors) {
+            try {
+                predecessor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        while (running) {
+            if (partition.isOffline()) {
+                if (!followLeader()) {
+                    return;
+                }
+                continue;
+            }
+            long offset = partition.getCommittedOffset(groupId);
+            FetchResult result = partition.fetch(offset , MIN_FETCH_BYTES , MAX_FETCH_WAIT_MS , MAX_POLL_EVENTS);
+            if (result.isEmpty()) {
+                // The fetch may still have skipped transaction markers or aborted events.
+                if (result.getNextOffset() > offset) {
+                    partition.commitOffset(groupId , result.getNextOffset());
+                }
+                continue;
+            }
+            Event retry = null;
+            for (Event event : result.getEvents()) {
+                if (!handle(event)) {
+                    retry = event;
+                    break;
+                }
+            }
+            if (retry == null) {
+                partition.commitOffset(groupId , result.getNextOffset());
+            } else {
+                partition.commitOffset(groupId , retry.getOffset());
+                if (!backoff()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // An offline replica answers every fetch at once with nothing, so without this the worker
+    // would spin. Offsets live with the topic-partition, so the new leader resumes where this
+    // one stopped. Returns false if interrupted while no leader is available.
+    private boolean followLeader () {
+        Partition current = topic.getPartition(partition.getId());
+        if (current != partition && !current.isOffline()) {
+            partition = current;
+            return true;
+        }
+        return backoff();
+    }
+
+    private boolean backoff () {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Returns false when the event has to be redelivered.
+    private boolean handle ( Event event ) {
+        try {
+            handler.accept(event);
+            return true;
+        } catch (RuntimeException e) {
+            failed.increment();
+            return failurePolicy == HandlerFailurePolicy.SKIP;
+        }
+    }
+
+    void stop () {
+        running = false;
+    }
+}
@@ -0,0 +1,17 @@
+package com.lld.medium.kafka;
+
+public interface Partitioner {
+
+    // Index into topic.getPartitions() the event should be written to.
+    int partition ( Topic topic , Event event );
+
+    // Called once the batch that was filling previousPartition has been sealed.
+    default void onNewBatch ( Topic topic , int previousPartition ) {
+    }
+
+    // False when the event's partition was fixed by its key rather than by sticky placement,
+    // so writing it alone must not move the sticky partition on.
+    default boolean isSticky ( Event event ) {
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Baseline numbers for the event pipeline hot paths: queue hand-off under 1..N producers and
+// consumers, partition append and read, producer throughput and consumer-to-server fan-out.
+//
+//   java com.lld.medium.kafka.PipelineBenchmark [operations] [warmupIterations] [measuredIterations]
+//
+// Every benchmark runs in this JVM after a warmup, so numbers from one run are comparable
+// with each other; compare against a baseline run on the same machine.
+public class PipelineBenchmark {
+
+    private static final int[] THREAD_COUNTS = { 1 , 2 , 4 };
+    private static final int RING_CAPACITY = 1024;
+    private static final int BATCH_EVENTS = 100;
+    private static final int SERVERS = 2;
+
+    private final int operations;
+    private final BenchmarkRunner runner;
+    private final Event[] events;
+    private final List<Event> eventList;
+
+    PipelineBenchmark ( int operations , int warmupIterations , int measuredIterations ) {
+        this.operations = operations;
+        this.runner = new BenchmarkRunner(warmupIterations , measuredIterations);
+        // Events are built up front so their construction is not part of any measurement;
+        // the offset field carries the index used to look up when each event was sent.
+        this.events = new Event[operations];
+        for (int i = 0 ; i < operations ; i++) {
+            events[i] = new Event("key-" + (i % 1024) , "type" , "payload-" + i , i);
+        }
+        this.eventList = Arrays.asList(events);
+    }
+
+    public static void main ( String[] args ) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int warmupIterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int measuredIterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        new PipelineBenchmark(operations , warmupIterations , measuredIterations).runAll();
+    }
+
+    void runAll () throws Exception {
+        runner.printHeader();
+        for (int threads : THREAD_COUNTS) {
+            runner.run("queue.linked " + threads + "p" + threads + "c" , operations , 1 ,
+                       ( ops , recorder ) -> queueHandOff(new EventQueue() , threads , ops , recorder));
+            runner.run("queue.ring " + threads + "p" + threads + "c" , operations , 1 ,
+                       ( ops , recorder ) -> queueHandOff(new RingBufferEventQueue(RING_CAPACITY ,
+                                                                                  WaitStrategy.yielding()) ,
+                                                          threads , ops , recorder));
+        }
+        runner.run("partition.append" , operations , 1 , this::partitionAppend);
+        runner.run("partition.append batch=" + BATCH_EVENTS , operations , 1 , this::partitionAppendBatch);
+        runner.run("partition.read" , operations , 1 , this::partitionRead);
+        runner.run("producer.direct" , operations , 1 , ( ops , recorder ) -> produce(null , ops , recorder));
+        runner.run("producer.batched" , operations , 1 ,
+                   ( ops , recorder ) -> produce(new EventProducer(newTopic() , new KeyPartitioner() , 16 * 1024 , 5) ,
+                                                 ops , recorder));
+        runner.run("fanout.inline " + SERVERS + " servers" , operations , SERVERS ,
+                   ( ops , recorder ) -> fanOut(false , ops , recorder));
+        runner.run("fanout.dispatch " + SERVERS + " servers" , operations , SERVERS ,
+                   ( ops , recorder ) -> fanOut(true , ops , recorder));
+    }
+
+    // Latency is measured from addEvent to the consumer receiving the event.
+    private void queueHandOff ( EventQueue queue , int threads , int ops , LatencyRecorder recorder )
+            throws InterruptedException {
+        AtomicLongArray sentAt = new AtomicLongArray(ops);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0 ; t < threads ; t++) {
+            int from = ops * t / threads;
+            int to = ops * (t + 1) / threads;
+            workers.add(new Thread(BenchmarkRunner.counted(() -> {
+                for (int i = from ; i < to ; i++) {
+                    sentAt.lazySet(i , System.nanoTime());
+                    queue.addEvent(events[i]);
+                }
+            })));
+            workers.add(new Thread(BenchmarkRunner.counted(() -> {
+                for (int i = from ; i < to ; i++) {
+                    Event event = queue.getNextEvent();
+                    recorder.record(System.nanoTime() - sentAt.get((int) event.getOffset()));
+                }
+            })));
+        }
+        startAndJoin(workers);
+    }
+
+    private void partitionAppend ( int ops , LatencyRecorder recorder ) {
+        Partition partition = new Partition(0);
+        for (int i = 0 ; i < ops ; i++) {
+            long start = System.nanoTime();
+            partition.addEvent(events[i]);
+            recorder.record(System.nanoTime() - start);
+        }
+        partition.getLog().close();
+    }
+
+    // One sample per event: the batch latency spread over the events it carried.
+    private void partitionAppendBatch ( int ops , LatencyRecorder recorder ) {
+        Partition partition = new Partition(0);
+        for (int from = 0 ; from < ops ; from += BATCH_EVENTS) {
+            List<Event> batch = eventList.subList(from , Math.min(from + BATCH_EVENTS , ops));
+            long start = System.nanoTime();
+            partition.addEvents(batch);
+            long perEvent = (System.nanoTime() - start) / batch.size();
+            for (int i = 0 ; i < batch.size() ; i++) {
+                recorder.record(perEvent);
+            }
+        }
+        partition.getLog().close();
+    }
+
+    // Reads the whole log back one event per call, decoding each event's data.
+    private void partitionRead ( int ops , LatencyRecorder recorder ) {
+        Partition partition = new Partition(0);
+        partition.addEvents(eventList.subList(0 , ops));
+        for (int offset = 0 ; offset < ops ; offset++) {
+            long start = System.nanoTime();
+            List<Event> read = partition.read(offset , 1);
+            read.get(0).getData();
+            recorder.record(System.nanoTime() - start);
+        }
+        partition.getLog().close();
+    }
+
+    // Latency is the time for produceAsync to hand the event off; throughput includes the
+    // final flush, so batched numbers cover the writes too.
+    private void produce ( EventProducer batched , int ops , LatencyRecorder recorder ) {
+        EventProducer producer = batched != null ? batched : new EventProducer(newTopic() , new KeyPartitioner());
+        CompletableFuture<Long> last = null;
+        for (int i = 0 ; i < ops ; i++) {
+            long start = System.nanoTime();
+            last = producer.produceAsync(events[i]);
+            recorder.record(System.nanoTime() - start);
+        }
+        producer.flush();
+        last.join();
+        producer.close();
+    }
+
+    // Latency is measured from the event entering the queue to each server's notify.
+    private void fanOut ( boolean dispatch , int ops , LatencyRecorder recorder ) throws InterruptedException {
+        AtomicLongArray sentAt = new AtomicLongArray(ops);
+        CountDownLatch delivered = new CountDownLatch(ops * SERVERS);
+        List<Server> servers = new ArrayList<>();
+        for (int s = 0 ; s < SERVERS ; s++) {
+            servers.add(new TimedServer("server-" + s , sentAt , delivered , recorder));
+        }
+        EventQueue queue = new RingBufferEventQueue(RING_CAPACITY , WaitStrategy.yielding());
+        ExecutorService executor = dispatch
+                ? Executors.newFixedThreadPool(SERVERS , work -> new Thread(BenchmarkRunner.counted(work)))
+                : null;
+        EventConsumer consumer = dispatch ? new EventConsumer(queue , servers , executor , 256 , OverflowPolicy.BLOCK)
+                                          : new EventConsumer(queue , servers);
+        Thread consumerThread = new Thread(consumer , "benchmark-consumer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        try {
+            for (int i = 0 ; i < ops ; i++) {
+                sentAt.lazySet(i , System.nanoTime());
+                queue.addEvent(events[i]);
+            }
+            delivered.await();
+        } finally {
+            // The yielding ring never parks, so a consumer left running would spin a core
+            // through every later iteration.
+            consumer.stop();
+            queue.addEvent(events[0]);
+            consumerThread.join();
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(1 , TimeUnit.MINUTES);
+            }
+        }
+    }
+
+    private static Topic newTopic () {
+        Topic topic = new Topic("benchmark");
+        for (int p = 0 ; p < 4 ; p++) {
+            topic.addPartition(new Partition(p));
+        }
+        return topic;
+    }
+
+    private static void startAndJoin ( List<Thread> threads ) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static class TimedServer extends Server {
+
+        private final AtomicLongArray sentAt;
+        private final CountDownLatch delivered;
+        private final LatencyRecorder recorder;
+
+        TimedServer ( String id , AtomicLongArray sentAt , CountDownLatch delivered , LatencyRecorder recorder ) {
+            super(id);
+            this.sentAt = sentAt;
+            this.delivered = delivered;
+            this.recorder = recorder;
+        }
+
+        @Override
+        void notify ( Event event ) {
+            recorder.record(System.nanoTime() - sentAt.get((int) event.getOffset()));
+            delivered.countDown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+class ProducerBatch {
+
+    private final Partition partition;
+    private final List<Event> events = new ArrayList<>();
+    private final List<CompletableFuture<Long>> futures = new ArrayList<>();
+    private int sizeInBytes;
+
+    ProducerBatch ( Partition partition ) {
+        this.partition = partition;
+    }
+
+    void add ( Event event , CompletableFuture<Long> future ) {
+        events.add(event);
+        futures.add(future);
+        sizeInBytes += event.sizeInBytes();
+    }
+
+    // Writes the whole batch to the partition and completes every future with its event's offset.
+    void send ( BatchWriter writer ) {
+        try {
+            complete(writer.write(partition , events));
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    void complete ( long baseOffset ) {
+        for (int i = 0 ; i < futures.size() ; i++) {
+            futures.get(i).complete(baseOffset + i);
+        }
+    }
+
+    void fail ( Throwable cause ) {
+        for (CompletableFuture<Long> future : futures) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    List<Event> getEvents () {
+        return events;
+    }
+
+    Partition getPartition () {
+        return partition;
+    }
+
+    int getSizeInBytes () {
+        return sizeInBytes;
+    }
+}
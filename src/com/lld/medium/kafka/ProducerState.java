@@ -0,0 +1,45 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// Per-producer sequence bookkeeping kept by a partition. A batch whose sequences were already
+// written is answered from the few most recent batches instead of being appended again.
+class ProducerState {
+
+    private static final int CACHED_BATCHES = 5;
+
+    private int lastSequence = -1;
+    private final ArrayDeque<long[]> recentBatches = new ArrayDeque<>(CACHED_BATCHES);  // {baseSequence, count, baseOffset}
+
+    synchronized long append ( int baseSequence , List<Event> batch , ToLongFunction<List<Event>> appender ) {
+        int batchLastSequence = baseSequence + batch.size() - 1;
+        if (batchLastSequence <= lastSequence) {
+            for (long[] recent : recentBatches) {
+                if (recent[0] == baseSequence && recent[1] == batch.size()) {
+                    return recent[2];
+                }
+            }
+            throw new IllegalStateException("Duplicate sequence " + baseSequence + " is too old to resolve");
+        }
+        if (baseSequence != lastSequence + 1) {
+            throw new IllegalStateException("Out of order sequence " + baseSequence + ", expected " + (lastSequence + 1));
+        }
+        long baseOffset = appender.applyAsLong(batch);
+        lastSequence = batchLastSequence;
+        if (recentBatches.size() == CACHED_BATCHES) {
+            recentBatches.pollFirst();
+        }
+        recentBatches.addLast(new long[]{ baseSequence , batch.size() , baseOffset });
+        return baseOffset;
+    }
+
+    // Forgets the batches that do not lie entirely below logEndOffset, newest first, so their
+    // sequences are accepted again when the producer retries them against a new leader.
+    synchronized void truncateTo ( long logEndOffset ) {
+        while (!recentBatches.isEmpty() && recentBatches.peekLast()[2] + recentBatches.peekLast()[1] > logEndOffset) {
+            lastSequence = (int) recentBatches.pollLast()[0] - 1;
+        }
+    }
+}
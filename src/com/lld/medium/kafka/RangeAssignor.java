@@ -0,0 +1,26 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Gives each member a contiguous range of partitions; the first members take one extra
+// when the partitions do not divide evenly.
+public class RangeAssignor implements PartitionAssignor {
+
+    @Override
+    public Map<String, List<Partition>> assign ( List<String> memberIds , Topic topic ) {
+        Map<String, List<Partition>> assignment = new LinkedHashMap<>();
+        List<Partition> partitions = topic.getPartitions();
+        int perMember = partitions.size() / memberIds.size();
+        int extra = partitions.size() % memberIds.size();
+        int start = 0;
+        for (int i = 0 ; i < memberIds.size() ; i++) {
+            int count = perMember + (i < extra ? 1 : 0);
+            assignment.put(memberIds.get(i) , new ArrayList<>(partitions.subList(start , start + count)));
+            start += count;
+        }
+        return assignment;
+    }
+}
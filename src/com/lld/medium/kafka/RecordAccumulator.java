@@ -0,0 +1,81 @@
+package com.lld.medium.kafka;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Collects events into one open batch per partition. A batch is handed to the sender thread
+// as soon as it reaches batchSize bytes, or lingerMs after its first event, whichever is first.
+class RecordAccumulator {
+
+    private final int batchSize;
+    private final long lingerMs;
+    private final Consumer<Partition> onBatchSealed;
+    private final BatchWriter writer;
+    private final Map<Partition, ProducerBatch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable , "producer-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    RecordAccumulator ( int batchSize , long lingerMs , Consumer<Partition> onBatchSealed , BatchWriter writer ) {
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.onBatchSealed = onBatchSealed;
+        this.writer = writer;
+    }
+
+    CompletableFuture<Long> append ( Partition partition , Event event ) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        // The batch is detached and queued for sending inside compute(), so batches for one
+        // partition reach the sender in the order they were filled.
+        batches.compute(partition , ( key , batch ) -> {
+            if (batch == null) {
+                batch = new ProducerBatch(partition);
+                ProducerBatch lingering = batch;
+                sender.schedule(() -> expire(lingering) , lingerMs , TimeUnit.MILLISECONDS);
+            }
+            batch.add(event , future);
+            if (batch.getSizeInBytes() >= batchSize) {
+                ProducerBatch full = batch;
+                sender.execute(() -> full.send(writer));
+                onBatchSealed.accept(partition);
+                return null;
+            }
+            return batch;
+        });
+        return future;
+    }
+
+    private void expire ( ProducerBatch batch ) {
+        if (batches.remove(batch.getPartition() , batch)) {
+            onBatchSealed.accept(batch.getPartition());
+            batch.send(writer);
+        }
+    }
+
+    // Sends every open batch and waits until the sender has written them.
+    void flush () {
+        for (Partition partition : batches.keySet()) {
+            batches.computeIfPresent(partition , ( key , batch ) -> {
+                sender.execute(() -> batch.send(writer));
+                return null;
+            });
+        }
+        try {
+            sender.submit(() -> { }).get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Flush interrupted" , e);
+        }
+    }
+
+    void close () {
+        flush();
+        sender.shutdown();
+    }
+}
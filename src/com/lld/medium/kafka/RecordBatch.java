@@ -0,0 +1,163 @@
+package com.lld.medium.kafka;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+// On-disk layout of one batch:
+// [int length][long baseOffset][int recordCount][int lastOffsetDelta][long maxTimestamp][byte attributes][records...]
+// where length counts every byte after the length field itself. Each record is
+// [varint bodyLength][varint offsetDelta][event body] with the body encoded by EventCodec.
+// When the low attribute bits name a codec, the records section is stored as
+// [int uncompressedLength][compressed records] instead.
+final class RecordBatch {
+
+    static final int LENGTH_SIZE = 4;
+    static final int BASE_OFFSET = LENGTH_SIZE;
+    static final int RECORD_COUNT = BASE_OFFSET + 8;
+    static final int LAST_OFFSET_DELTA = RECORD_COUNT + 4;
+    static final int MAX_TIMESTAMP = LAST_OFFSET_DELTA + 4;
+    static final int ATTRIBUTES = MAX_TIMESTAMP + 8;
+    static final int OVERHEAD = ATTRIBUTES + 1;
+    static final int HEADER_SIZE = OVERHEAD - LENGTH_SIZE;
+
+    private final List<Event> events;
+    private final int[] offsetDeltas;
+    private final byte attributes;
+    private final byte[] compressed;
+    private final int recordsSize;
+    private final int sizeInBytes;
+
+    // Offsets inside a batch are relative, so the records can be encoded and compressed
+    // before the writer knows (and locks for) the base offset.
+    private RecordBatch ( List<Event> events , int[] offsetDeltas , CompressionCodec codec ) {
+        this.events = events;
+        this.offsetDeltas = offsetDeltas;
+        this.recordsSize = recordsSize(events , offsetDeltas);
+        if (codec == null) {
+            this.attributes = CompressionCodecs.NONE;
+            this.compressed = null;
+            this.sizeInBytes = OVERHEAD + recordsSize;
+        } else {
+            ByteBuffer records = ByteBuffer.allocate(recordsSize);
+            writeRecords(records , events , offsetDeltas);
+            this.attributes = codec.getId();
+            this.compressed = codec.compress(records.array() , 0 , recordsSize);
+            this.sizeInBytes = OVERHEAD + 4 + compressed.length;
+        }
+    }
+
+    // Events get consecutive offsets starting at whatever base offset the writer assigns.
+    static RecordBatch of ( List<Event> events , CompressionCodec codec ) {
+        int[] offsetDeltas = new int[events.size()];
+        for (int i = 0 ; i < offsetDeltas.length ; i++) {
+            offsetDeltas[i] = i;
+        }
+        return new RecordBatch(events , offsetDeltas , codec);
+    }
+
+    // Events keep the offsets they already have, gaps included; used when rewriting a log.
+    static RecordBatch preservingOffsets ( List<Event> events , CompressionCodec codec ) {
+        long baseOffset = events.get(0).getOffset();
+        int[] offsetDeltas = new int[events.size()];
+        for (int i = 0 ; i < offsetDeltas.length ; i++) {
+            offsetDeltas[i] = (int) (events.get(i).getOffset() - baseOffset);
+        }
+        return new RecordBatch(events , offsetDeltas , codec);
+    }
+
+    int sizeInBytes () {
+        return sizeInBytes;
+    }
+
+    int lastOffsetDelta () {
+        return offsetDeltas[offsetDeltas.length - 1];
+    }
+
+    void writeTo ( ByteBuffer buffer , long baseOffset , long timestamp ) {
+        buffer.putInt(sizeInBytes - LENGTH_SIZE);
+        buffer.putLong(baseOffset);
+        buffer.putInt(events.size());
+        buffer.putInt(lastOffsetDelta());
+        buffer.putLong(timestamp);
+        buffer.put(attributes);
+        if (compressed == null) {
+            writeRecords(buffer , events , offsetDeltas);
+        } else {
+            buffer.putInt(recordsSize);
+            buffer.put(compressed);
+        }
+    }
+
+    private static int recordsSize ( List<Event> events , int[] offsetDeltas ) {
+        int size = 0;
+        for (int i = 0 ; i < events.size() ; i++) {
+            int bodySize = events.get(i).sizeInBytes();
+            size += EventCodec.varintSize(bodySize) + EventCodec.varintSize(offsetDeltas[i]) + bodySize;
+        }
+        return size;
+    }
+
+    private static void writeRecords ( ByteBuffer buffer , List<Event> events , int[] offsetDeltas ) {
+        for (int i = 0 ; i < events.size() ; i++) {
+            Event event = events.get(i);
+            EventCodec.writeVarint(buffer , event.sizeInBytes());
+            EventCodec.writeVarint(buffer , offsetDeltas[i]);
+            event.writeTo(buffer);
+        }
+    }
+
+    // Next offset after a batch that starts at position in buffer.
+    static long nextOffset ( ByteBuffer buffer , int position ) {
+        return buffer.getLong(position + BASE_OFFSET) + buffer.getInt(position + LAST_OFFSET_DELTA) + 1;
+    }
+
+    // Appends flyweight views over the records of the batch at position, skipping offsets
+    // below fromOffset. Uncompressed records are neither decoded nor copied; a compressed
+    // batch is inflated in full on every call, so callers that read a batch piecemeal should
+    // inflate it once and pass the records to the other overload.
+    static int read ( ByteBuffer buffer , int position , long fromOffset , int maxEvents , List<Event> out ) {
+        return read(buffer , position , fromOffset , maxEvents , out , isCompressed(buffer , position)
+                ? inflate(buffer , position) : null);
+    }
+
+    // records is the batch's inflated record data, or null when the batch is not compressed.
+    static int read ( ByteBuffer buffer , int position , long fromOffset , int maxEvents , List<Event> out ,
+                      byte[] records ) {
+        long baseOffset = buffer.getLong(position + BASE_OFFSET);
+        int count = buffer.getInt(position + RECORD_COUNT);
+        ByteBuffer reader;
+        if (records == null) {
+            reader = buffer.duplicate();
+            reader.position(position + OVERHEAD);
+        } else {
+            reader = ByteBuffer.wrap(records);
+        }
+        int added = 0;
+        for (int i = 0 ; i < count && added < maxEvents ; i++) {
+            int bodySize = EventCodec.readVarint(reader);
+            long offset = baseOffset + EventCodec.readVarint(reader);
+            if (offset >= fromOffset) {
+                ByteBuffer body = reader.slice();
+                body.limit(bodySize);
+                out.add(new Event(body , offset));
+                added++;
+            }
+            reader.position(reader.position() + bodySize);
+        }
+        return added;
+    }
+
+    static boolean isCompressed ( ByteBuffer buffer , int position ) {
+        return (buffer.get(position + ATTRIBUTES) & CompressionCodecs.ID_MASK) != CompressionCodecs.NONE;
+    }
+
+    static byte[] inflate ( ByteBuffer buffer , int position ) {
+        CompressionCodec codec = CompressionCodecs.get(buffer.get(position + ATTRIBUTES) & CompressionCodecs.ID_MASK);
+        int compressedLength = buffer.getInt(position) - HEADER_SIZE - 4;
+        byte[] records = new byte[buffer.getInt(position + OVERHEAD)];
+        byte[] source = new byte[compressedLength];
+        buffer.get(position + OVERHEAD + 4 , source);
+        codec.decompress(source , 0 , compressedLength , records);
+        return records;
+    }
+}
@@ -0,0 +1,46 @@
+package com.lld.medium.kafka;
+
+import java.nio.charset.StandardCharsets;
+
+// What the remote tier knows about one uploaded segment. Stored next to the segment data as a
+// small text object so the tier can be rebuilt from the object store alone.
+final class RemoteSegment {
+
+    private final long baseOffset;
+    private final long nextOffset;
+    private final long size;
+    private final long maxTimestamp;
+
+    RemoteSegment ( long baseOffset , long nextOffset , long size , long maxTimestamp ) {
+        this.baseOffset = baseOffset;
+        this.nextOffset = nextOffset;
+        this.size = size;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    static RemoteSegment parse ( byte[] data ) {
+        String[] fields = new String(data , StandardCharsets.UTF_8).trim().split(" ");
+        return new RemoteSegment(Long.parseLong(fields[0]) , Long.parseLong(fields[1]) , Long.parseLong(fields[2]) ,
+                                 Long.parseLong(fields[3]));
+    }
+
+    byte[] toBytes () {
+        return (baseOffset + " " + nextOffset + " " + size + " " + maxTimestamp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    long getBaseOffset () {
+        return baseOffset;
+    }
+
+    long getNextOffset () {
+        return nextOffset;
+    }
+
+    long getSize () {
+        return size;
+    }
+
+    long getMaxTimestamp () {
+        return maxTimestamp;
+    }
+}
@@ -0,0 +1,63 @@
+package com.lld.medium.kafka;
+
+// Runs on a follower broker: pulls batches from the leader replica and appends them locally.
+class ReplicaFetcher implements Runnable {
+
+    private static final int MIN_FETCH_BYTES = 1;
+    private static final long MAX_FETCH_WAIT_MS = 100;
+    private static final int MAX_FETCH_EVENTS = 1000;
+
+    private final String brokerId;
+    private final Partition replica;
+    private volatile Partition leader;
+    private Partition truncatedFor;
+    private volatile boolean running = true;
+    private final Counter failures;
+
+    ReplicaFetcher ( String brokerId , Partition replica , Partition leader ) {
+        this.brokerId = brokerId;
+        this.replica = replica;
+        this.leader = leader;
+        this.failures = MetricsRegistry.getDefault().counter("replica." + brokerId + ".fetch-failed");
+    }
+
+    @Override
+    public void run () {
+        while (running) {
+            Partition source = leader;
+            try {
+                // Done here rather than by the cluster so it cannot race with an append below.
+                // Only marked done once it succeeded, so a failed truncation is retried.
+                if (source != truncatedFor) {
+                    replica.truncateToHighWatermark();
+                    truncatedFor = source;
+                }
+                FetchResult result = source.fetchForReplica(brokerId , replica.getLogEndOffset() , MIN_FETCH_BYTES ,
+                                                            MAX_FETCH_WAIT_MS , MAX_FETCH_EVENTS);
+                // Drop a batch from a leader that was replaced while it was being fetched.
+                if (source == leader) {
+                    replica.appendReplicated(result.getEvents() , result.getHighWatermark());
+                }
+            } catch (RuntimeException e) {
+                // Either the leader went offline and the cluster will point us at the new one, or
+                // the local log refused the truncation (a tiered log cannot cut into segments it
+                // already offloaded). Either way the thread must survive: count it and retry.
+                failures.increment();
+                try {
+                    Thread.sleep(MAX_FETCH_WAIT_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void setLeader ( Partition leader ) {
+        this.leader = leader;
+    }
+
+    void stop () {
+        running = false;
+    }
+}
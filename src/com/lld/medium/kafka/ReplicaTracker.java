@@ -0,0 +1,83 @@
+package com.lld.medium.kafka;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Leader-side view of its followers: how far each one has fetched, which of them are in sync,
+// and the resulting high watermark (the offset below which every in-sync replica has the data).
+class ReplicaTracker {
+
+    private final String leaderId;
+    private final long replicaLagMaxMs;
+    private final LongSupplier leaderLogEnd;
+    private final Runnable onIsrChange;
+    private final Map<String, long[]> followers = new ConcurrentHashMap<>();  // {logEndOffset, lastCaughtUpMs}
+    private final Set<String> isr = ConcurrentHashMap.newKeySet();
+    private volatile long highWatermark;
+
+    ReplicaTracker ( String leaderId , Iterable<String> followerIds , long replicaLagMaxMs , LongSupplier leaderLogEnd ,
+                     long highWatermark , Runnable onIsrChange ) {
+        this.leaderId = leaderId;
+        this.replicaLagMaxMs = replicaLagMaxMs;
+        this.leaderLogEnd = leaderLogEnd;
+        this.onIsrChange = onIsrChange;
+        this.highWatermark = highWatermark;
+        long now = System.currentTimeMillis();
+        for (String followerId : followerIds) {
+            followers.put(followerId , new long[]{ highWatermark , now });
+            isr.add(followerId);
+        }
+    }
+
+    // A fetch at fetchOffset proves the follower holds everything below it.
+    synchronized boolean onFollowerFetch ( String followerId , long fetchOffset ) {
+        long[] state = followers.computeIfAbsent(followerId , id -> new long[]{ 0 , 0 });
+        state[0] = fetchOffset;
+        if (fetchOffset >= leaderLogEnd.getAsLong()) {
+            state[1] = System.currentTimeMillis();
+            if (isr.add(followerId)) {
+                onIsrChange.run();
+            }
+        }
+        return update();
+    }
+
+    // Drops followers that have not caught up within replicaLagMaxMs and recomputes the
+    // high watermark; returns true when it moved.
+    synchronized boolean update () {
+        long now = System.currentTimeMillis();
+        long watermark = leaderLogEnd.getAsLong();
+        for (Map.Entry<String, long[]> entry : followers.entrySet()) {
+            long[] state = entry.getValue();
+            if (now - state[1] > replicaLagMaxMs) {
+                if (isr.remove(entry.getKey())) {
+                    onIsrChange.run();
+                }
+            } else if (isr.contains(entry.getKey())) {
+                watermark = Math.min(watermark , state[0]);
+            }
+        }
+        if (watermark > highWatermark) {
+            highWatermark = watermark;
+            return true;
+        }
+        return false;
+    }
+
+    long getHighWatermark () {
+        return highWatermark;
+    }
+
+    Set<String> getIsr () {
+        Set<String> members = new TreeSet<>(isr);
+        members.add(leaderId);
+        return members;
+    }
+
+    long getReplicaLagMaxMs () {
+        return replicaLagMaxMs;
+    }
+}
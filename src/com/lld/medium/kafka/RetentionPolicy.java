@@ -0,0 +1,47 @@
+package com.lld.medium.kafka;
+
+// Per-topic cleanup rules applied by the LogCleaner. A limit of -1 means unlimited.
+public final class RetentionPolicy {
+
+    public static final long UNLIMITED = -1;
+
+    private final long retentionMs;
+    private final long retentionBytes;
+    private final boolean compact;
+
+    private RetentionPolicy ( long retentionMs , long retentionBytes , boolean compact ) {
+        this.retentionMs = retentionMs;
+        this.retentionBytes = retentionBytes;
+        this.compact = compact;
+    }
+
+    // Drops the oldest data once it is older than retentionMs or the log exceeds retentionBytes.
+    public static RetentionPolicy delete ( long retentionMs , long retentionBytes ) {
+        return new RetentionPolicy(retentionMs , retentionBytes , false);
+    }
+
+    // Keeps only the latest event per key (Event.getId()); events without a key are kept.
+    public static RetentionPolicy compact () {
+        return new RetentionPolicy(UNLIMITED , UNLIMITED , true);
+    }
+
+    public static RetentionPolicy compactAndDelete ( long retentionMs , long retentionBytes ) {
+        return new RetentionPolicy(retentionMs , retentionBytes , true);
+    }
+
+    public long getRetentionMs () {
+        return retentionMs;
+    }
+
+    public long getRetentionBytes () {
+        return retentionBytes;
+    }
+
+    public boolean isCompact () {
+        return compact;
+    }
+
+    public boolean isDelete () {
+        return retentionMs != UNLIMITED || retentionBytes != UNLIMITED;
+    }
+}
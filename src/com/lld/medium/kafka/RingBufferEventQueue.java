@@ -0,0 +1,123 @@
+package com.lld.medium.kafka;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded multi-producer / multi-consumer queue over a pre-allocated ring of slots.
+// Each slot carries a sequence number that tells producers and consumers whose turn it is,
+// so neither side ever takes a lock; threads that cannot proceed defer to the WaitStrategy.
+public class RingBufferEventQueue extends EventQueue {
+
+    private final Event[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+
+    public RingBufferEventQueue ( int capacity , WaitStrategy waitStrategy ) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        this.slots = new Event[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0 ; i < capacity ; i++) {
+            sequences.set(i , i);
+        }
+    }
+
+    @Override
+    public void addEvent ( Event event ) {
+        int attempt = 0;
+        while (!offer(event)) {
+            waitStrategy.idle(attempt++ , this::isFull);
+        }
+        waitStrategy.signalAll();
+    }
+
+    @Override
+    public void addEvents ( List<Event> events ) {
+        for (Event event : events) {
+            int attempt = 0;
+            while (!offer(event)) {
+                waitStrategy.signalAll();
+                waitStrategy.idle(attempt++ , this::isFull);
+            }
+        }
+        waitStrategy.signalAll();
+    }
+
+    @Override
+    public Event getNextEvent () {
+        int attempt = 0;
+        Event event;
+        while ((event = poll()) == null) {
+            waitStrategy.idle(attempt++ , this::isEmpty);
+        }
+        waitStrategy.signalAll();
+        return event;
+    }
+
+    public boolean offer ( Event event ) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position , position + 1)) {
+                    slots[index] = event;
+                    sequences.set(index , position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    public Event poll () {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position , position + 1)) {
+                    Event event = slots[index];
+                    slots[index] = null;
+                    sequences.set(index , position + mask + 1);
+                    return event;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    public int size () {
+        return (int) Math.max(0 , tail.get() - head.get());
+    }
+
+    public int capacity () {
+        return slots.length;
+    }
+
+    private boolean isEmpty () {
+        long position = head.get();
+        return sequences.get((int) position & mask) - (position + 1) < 0;
+    }
+
+    private boolean isFull () {
+        long position = tail.get();
+        return sequences.get((int) position & mask) - position < 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Deals partitions out to members one at a time, like cards.
+public class RoundRobinAssignor implements PartitionAssignor {
+
+    @Override
+    public Map<String, List<Partition>> assign ( List<String> memberIds , Topic topic ) {
+        Map<String, List<Partition>> assignment = new LinkedHashMap<>();
+        for (String memberId : memberIds) {
+            assignment.put(memberId , new ArrayList<>());
+        }
+        List<Partition> partitions = topic.getPartitions();
+        for (int i = 0 ; i < partitions.size() ; i++) {
+            assignment.get(memberIds.get(i % memberIds.size())).add(partitions.get(i));
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,113 @@
+package com.lld.medium.kafka;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Local LRU cache of segments downloaded from the remote tier. A segment is fetched once, by
+// the background fetcher, no matter how many readers ask for it; prefetch() starts a download
+// without waiting so historical replays find the next segment already local. Evicted segments
+// are deleted from disk, which readers still holding their mapping do not notice.
+class SegmentCache {
+
+    private final Path dir;
+    private final ObjectStore store;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+    private final LinkedHashMap<Long, CompletableFuture<LogSegment>> segments;
+    private final ExecutorService fetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable , "remote-segment-fetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    SegmentCache ( Path dir , ObjectStore store , int maxSegments , int segmentBytes , int indexIntervalBytes ) {
+        this.dir = dir;
+        this.store = store;
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.segments = new LinkedHashMap<>(16 , 0.75f , true) {
+            @Override
+            protected boolean removeEldestEntry ( Map.Entry<Long, CompletableFuture<LogSegment>> eldest ) {
+                if (size() <= maxSegments) {
+                    return false;
+                }
+                eldest.getValue().thenAccept(LogSegment::delete);
+                return true;
+            }
+        };
+        clear();
+    }
+
+    // Leftovers from a previous run are not trusted; the remote copy is the source of truth.
+    private void clear () {
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to clear segment cache " + dir , e);
+        }
+    }
+
+    LogSegment get ( RemoteSegment remote , String key ) {
+        try {
+            return load(remote , key).join();
+        } catch (CompletionException e) {
+            synchronized (this) {
+                segments.remove(remote.getBaseOffset());
+            }
+            throw e;
+        }
+    }
+
+    void prefetch ( RemoteSegment remote , String key ) {
+        load(remote , key);
+    }
+
+    private synchronized CompletableFuture<LogSegment> load ( RemoteSegment remote , String key ) {
+        CompletableFuture<LogSegment> segment = segments.get(remote.getBaseOffset());
+        if (segment == null) {
+            segment = CompletableFuture.supplyAsync(() -> download(remote , key) , fetcher);
+            segments.put(remote.getBaseOffset() , segment);
+        }
+        return segment;
+    }
+
+    private LogSegment download ( RemoteSegment remote , String key ) {
+        store.download(key , dir.resolve(LogSegment.fileName(remote.getBaseOffset())));
+        return new LogSegment(dir , remote.getBaseOffset() , segmentBytes , indexIntervalBytes);
+    }
+
+    synchronized void invalidate ( long baseOffset ) {
+        CompletableFuture<LogSegment> segment = segments.remove(baseOffset);
+        if (segment != null) {
+            segment.thenAccept(LogSegment::delete);
+        }
+    }
+
+    void close () {
+        List<CompletableFuture<LogSegment>> cached;
+        synchronized (this) {
+            cached = new ArrayList<>(segments.values());
+            segments.clear();
+        }
+        for (CompletableFuture<LogSegment> segment : cached) {
+            segment.thenAccept(LogSegment::delete);
+        }
+        fetcher.shutdown();
+    }
+}
@@ -0,0 +1,327 @@
+package com.lld.medium.kafka;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class SegmentedLog implements EventLog {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_INTERVAL_BYTES = 4096;
+    private static final String CLEANER_DIR = ".cleaner";
+    private static final int CLEANER_BATCH_EVENTS = 500;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private volatile LogSegment activeSegment;
+    private volatile CompressionCodec compression;
+    // Bumped by every truncation. Compaction decides what survives from a scan of the whole log,
+    // so a truncation during the scan invalidates all of its rewrites, not only the segment cut.
+    private volatile int truncations;
+
+    public SegmentedLog ( Path dir ) {
+        this(dir , DEFAULT_SEGMENT_BYTES , DEFAULT_INDEX_INTERVAL_BYTES);
+    }
+
+    public SegmentedLog ( Path dir , int segmentBytes , int indexIntervalBytes ) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir , "*" + LogSegment.SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    long baseOffset = Long.parseLong(name.substring(0 , name.length() - LogSegment.SUFFIX.length()));
+                    segments.put(baseOffset , new LogSegment(dir , baseOffset , segmentBytes , indexIntervalBytes));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open log " + dir , e);
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L , new LogSegment(dir , 0L , segmentBytes , indexIntervalBytes));
+        }
+        activeSegment = segments.lastEntry().getValue();
+    }
+
+    @Override
+    public long append ( Event event ) {
+        return append(List.of(event));
+    }
+
+    // Writes the events as one batch and returns the offset of the first one.
+    // Encoding and compression happen before the append lock is taken.
+    @Override
+    public long append ( List<Event> events ) {
+        RecordBatch batch = RecordBatch.of(events , compression);
+        if (batch.sizeInBytes() > segmentBytes) {
+            throw new IllegalArgumentException("Batch of " + events.size() + " events exceeds segment size");
+        }
+        return append(batch);
+    }
+
+    private synchronized long append ( RecordBatch batch ) {
+        long offset = activeSegment.getNextOffset();
+        long timestamp = System.currentTimeMillis();
+        if (!activeSegment.append(offset , timestamp , batch)) {
+            roll(offset);
+            activeSegment.append(offset , timestamp , batch);
+        }
+        return offset;
+    }
+
+    private void roll ( long nextOffset ) {
+        activeSegment.flush();
+        LogSegment segment = new LogSegment(dir , nextOffset , segmentBytes , indexIntervalBytes);
+        segments.put(nextOffset , segment);
+        activeSegment = segment;
+    }
+
+    // Every segment after the one holding offset is deleted and that one is cut back to the start
+    // of the batch containing offset. An offset at or below the log start keeps the first segment,
+    // emptied, so the log always has an active segment.
+    @Override
+    public synchronized void truncateTo ( long offset ) {
+        if (offset >= getLogEndOffset()) {
+            return;
+        }
+        Long holder = segments.floorKey(offset);
+        long keep = holder == null ? segments.firstKey() : holder;
+        for (LogSegment segment : new ArrayList<>(segments.tailMap(keep , false).values())) {
+            segments.remove(segment.getBaseOffset());
+            segment.delete();
+        }
+        truncations++;
+        activeSegment = segments.get(keep);
+        activeSegment.truncateTo(offset);
+        if (getLogEndOffset() > Math.max(offset , keep)) {
+            throw new IllegalStateException("Truncation to " + offset + " left the log ending at " + getLogEndOffset());
+        }
+    }
+
+    @Override
+    public List<Event> read ( long offset , int maxEvents ) {
+        List<Event> events = new ArrayList<>(Math.min(maxEvents , 256));
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+        if (entry == null) {
+            entry = segments.firstEntry();
+        }
+        for (LogSegment segment : segments.tailMap(entry.getKey()).values()) {
+            if (events.size() >= maxEvents) {
+                break;
+            }
+            segment.read(offset , maxEvents - events.size() , events);
+        }
+        return events;
+    }
+
+    @Override
+    public long getLogEndOffset () {
+        return activeSegment.getNextOffset();
+    }
+
+    @Override
+    public long getLogStartOffset () {
+        return segments.firstKey();
+    }
+
+    // Holds the log's monitor like append and truncateTo, so no segment is deleted while a roll
+    // or a truncation is rearranging the segment map.
+    @Override
+    public synchronized long applyRetention ( long retentionMs , long retentionBytes ) {
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        for (LogSegment segment : segments.values()) {
+            totalBytes += segment.getSize();
+        }
+        long freed = 0;
+        Iterator<LogSegment> oldestFirst = segments.values().iterator();
+        while (oldestFirst.hasNext()) {
+            LogSegment segment = oldestFirst.next();
+            if (segment == activeSegment) {
+                break;
+            }
+            boolean expired = retentionMs >= 0 && now - segment.getMaxTimestamp() > retentionMs;
+            boolean oversized = retentionBytes >= 0 && totalBytes - freed > retentionBytes;
+            if (!expired && !oversized) {
+                break;
+            }
+            segments.remove(segment.getBaseOffset());
+            freed += segment.getSize();
+            segment.delete();
+        }
+        return freed;
+    }
+
+    // Two passes: find the latest offset of every key, then rewrite each closed segment that
+    // holds superseded events into a side directory and swap it in under the same base offset.
+    // Reading and rewriting run without the log's monitor so appends keep flowing; only the swap
+    // takes it, and nothing is swapped once the log has been truncated or the segment deleted.
+    @Override
+    public long compact () {
+        int truncationsAtStart = truncations;
+        try {
+            return compact(truncationsAtStart);
+        } catch (RuntimeException e) {
+            // Events are views over the mapping, so a truncation and re-append can rewrite bytes
+            // under the scan; such a pass is abandoned and the next one starts afresh.
+            if (truncations != truncationsAtStart) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private long compact ( int truncationsAtStart ) {
+        LogSegment active = activeSegment;
+        Map<String, Long> latest = new HashMap<>();
+        for (LogSegment segment : segments.values()) {
+            for (Event event : readSegment(segment)) {
+                if (event.getId() != null) {
+                    latest.put(event.getId() , event.getOffset());
+                }
+            }
+        }
+        long freed = 0;
+        for (LogSegment segment : segments.headMap(active.getBaseOffset()).values()) {
+            List<Event> survivors = new ArrayList<>();
+            List<Event> events = readSegment(segment);
+            for (Event event : events) {
+                Long newest = event.getId() == null ? null : latest.get(event.getId());
+                if (newest == null || newest <= event.getOffset()) {
+                    survivors.add(event);
+                }
+            }
+            if (survivors.size() < events.size()) {
+                freed += replace(segment , truncationsAtStart , survivors);
+            }
+        }
+        return freed;
+    }
+
+    private List<Event> readSegment ( LogSegment segment ) {
+        List<Event> events = new ArrayList<>();
+        segment.read(segment.getBaseOffset() , Integer.MAX_VALUE , events);
+        return events;
+    }
+
+    private long replace ( LogSegment segment , int truncationsAtStart , List<Event> survivors ) {
+        long before = segment.getSize();
+        if (survivors.isEmpty()) {
+            synchronized (this) {
+                if (!isUnchanged(segment , truncationsAtStart)) {
+                    return 0;
+                }
+                segments.remove(segment.getBaseOffset());
+                segment.delete();
+            }
+            return before;
+        }
+        Path cleanedFile;
+        try {
+            Path cleanerDir = Files.createDirectories(dir.resolve(CLEANER_DIR));
+            // A pass that died mid-write leaves its copy behind; recovering it would append the
+            // survivors after stale batches.
+            Files.deleteIfExists(cleanerDir.resolve(LogSegment.fileName(segment.getBaseOffset())));
+            LogSegment cleaned = new LogSegment(cleanerDir , segment.getBaseOffset() , segmentBytes ,
+                                                indexIntervalBytes);
+            for (int from = 0 ; from < survivors.size() ; from += CLEANER_BATCH_EVENTS) {
+                List<Event> chunk = survivors.subList(from , Math.min(from + CLEANER_BATCH_EVENTS , survivors.size()));
+                cleaned.append(chunk.get(0).getOffset() , segment.getMaxTimestamp() ,
+                               RecordBatch.preservingOffsets(chunk , compression));
+            }
+            cleaned.close();
+            cleanedFile = cleaned.getFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact segment " + segment.getFile() , e);
+        }
+        LogSegment replacement;
+        synchronized (this) {
+            try {
+                if (!isUnchanged(segment , truncationsAtStart)) {
+                    Files.deleteIfExists(cleanedFile);
+                    return 0;
+                }
+                Files.move(cleanedFile , segment.getFile() , StandardCopyOption.REPLACE_EXISTING ,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to compact segment " + segment.getFile() , e);
+            }
+            segment.close();
+            replacement = new LogSegment(dir , segment.getBaseOffset() , segmentBytes , indexIntervalBytes);
+            segments.put(segment.getBaseOffset() , replacement);
+        }
+        return before - replacement.getSize();
+    }
+
+    // Called with the monitor held: the segment is still in the log and closed, and no
+    // truncation has happened since the compaction pass started.
+    private boolean isUnchanged ( LogSegment segment , int truncationsAtStart ) {
+        return truncations == truncationsAtStart && segments.get(segment.getBaseOffset()) == segment
+                && segment != activeSegment;
+    }
+
+    // Segments that are no longer written to, oldest first.
+    List<LogSegment> getClosedSegments () {
+        return new ArrayList<>(segments.headMap(activeSegment.getBaseOffset()).values());
+    }
+
+    // Drops closed segments that end at or below offset; used once they are held elsewhere.
+    synchronized long deleteSegmentsBelow ( long offset ) {
+        long freed = 0;
+        for (LogSegment segment : getClosedSegments()) {
+            if (segment.getNextOffset() > offset) {
+                break;
+            }
+            segments.remove(segment.getBaseOffset());
+            freed += segment.getSize();
+            segment.delete();
+        }
+        return freed;
+    }
+
+    int getActiveSegmentSize () {
+        return activeSegment.getSize();
+    }
+
+    int getSegmentBytes () {
+        return segmentBytes;
+    }
+
+    int getIndexIntervalBytes () {
+        return indexIntervalBytes;
+    }
+
+    // Applies to batches appended from now on; existing batches keep the codec they were written with.
+    @Override
+    public void setCompression ( CompressionCodec compression ) {
+        this.compression = compression;
+    }
+
+    public int getSegmentCount () {
+        return segments.size();
+    }
+
+    public void flush () {
+        activeSegment.flush();
+    }
+
+    @Override
+    public synchronized void close () {
+        for (LogSegment segment : segments.values()) {
+            segment.close();
+        }
+    }
+}
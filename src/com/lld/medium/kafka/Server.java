@@ -3,14 +3,25 @@ package com.lld.medium.kafka;
 public class Server {
 
     private String id;
+    private final Counter notified;
+    private final Histogram notifyLatency;
 
     public Server ( String id ) {
         this.id = id;
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        this.notified = registry.counter("server." + id + ".notified");
+        this.notifyLatency = registry.histogram("server." + id + ".notify-latency-ns");
     }
 
     void notify ( Event event ) {
-        System.out.println("Server " + id + " notified of event: " + event.getId()
-                                   +" type: "+event.getType() +" data: "+event.getData());
+        notified.increment();
+    }
+
+    // Entry point for consumers: notifies the server and records how long it took.
+    final void deliver ( Event event ) {
+        long start = System.nanoTime();
+        notify(event);
+        notifyLatency.record(System.nanoTime() - start);
     }
 
     public String getId () {
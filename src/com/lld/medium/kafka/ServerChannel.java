@@ -0,0 +1,141 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Per-server delivery lane. At most one drain task per channel is ever scheduled on the shared
+// executor, so a server sees events in the order they were offered while different servers
+// are notified in parallel and a slow one only backs up its own lane.
+class ServerChannel implements Runnable {
+
+    private static final int DRAIN_BATCH = 64;
+
+    private final Server server;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Event> inFlight;
+    private final ArrayDeque<Event> spilled = new ArrayDeque<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Counter failed;
+    private boolean scheduled;
+
+    ServerChannel ( Server server , Executor executor , int capacity , OverflowPolicy policy ) {
+        this.server = server;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.inFlight = new ArrayDeque<>(capacity);
+        this.failed = MetricsRegistry.getDefault().counter("server." + server.getId() + ".delivery-failed");
+    }
+
+    boolean offer ( Event event ) {
+        boolean schedule = false;
+        lock.lock();
+        try {
+            if (!spilled.isEmpty()) {
+                spilled.add(event);
+            } else if (inFlight.size() < capacity) {
+                inFlight.add(event);
+            } else if (policy == OverflowPolicy.DROP) {
+                dropped.incrementAndGet();
+                return false;
+            } else if (policy == OverflowPolicy.SPILL) {
+                spilled.add(event);
+            } else {
+                while (inFlight.size() >= capacity) {
+                    notFull.await();
+                }
+                inFlight.add(event);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                schedule = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                unschedule();
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    // Delivers up to DRAIN_BATCH events, then yields the executor thread to other lanes. If the
+    // drain fails or cannot be rescheduled, the lane is released so the next offer schedules it
+    // again instead of the lane stalling for good.
+    @Override
+    public void run () {
+        boolean owned = true;
+        try {
+            owned = drain();
+            if (owned) {
+                executor.execute(this);
+                owned = false;
+            }
+        } finally {
+            if (owned) {
+                unschedule();
+            }
+        }
+    }
+
+    // Returns false once the lane ran dry and was released.
+    private boolean drain () {
+        for (int i = 0 ; i < DRAIN_BATCH ; i++) {
+            Event event;
+            lock.lock();
+            try {
+                event = inFlight.poll();
+                while (inFlight.size() < capacity && !spilled.isEmpty()) {
+                    inFlight.add(spilled.poll());
+                }
+                if (event == null) {
+                    scheduled = false;
+                    return false;
+                }
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            // A failing server loses this event, not its lane.
+            try {
+                server.deliver(event);
+            } catch (RuntimeException e) {
+                failed.increment();
+            }
+        }
+        return true;
+    }
+
+    private void unschedule () {
+        lock.lock();
+        try {
+            scheduled = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDropped () {
+        return dropped.get();
+    }
+
+    Server getServer () {
+        return server;
+    }
+}
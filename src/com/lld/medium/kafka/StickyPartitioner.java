@@ -0,0 +1,23 @@
+package com.lld.medium.kafka;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps writing to one partition until its batch is sealed, then moves on to the next one,
+// so batches fill up quickly while load still rotates across every partition.
+public class StickyPartitioner implements Partitioner {
+
+    private final AtomicInteger current = new AtomicInteger();
+
+    @Override
+    public int partition ( Topic topic , Event event ) {
+        return current.get() % topic.getPartitionCount();
+    }
+
+    @Override
+    public void onNewBatch ( Topic topic , int previousPartition ) {
+        int sticky = current.get();
+        if (sticky % topic.getPartitionCount() == previousPartition) {
+            current.compareAndSet(sticky , (sticky + 1) % topic.getPartitionCount());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.lld.medium.kafka;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Two-tier log: a local SegmentedLog holds the hot tail and every closed segment is also
+// uploaded to an ObjectStore. offload() uploads new closed segments and then drops local copies
+// beyond localRetentionBytes, so long retention costs object storage rather than local disk.
+// Reads below the local start are served from downloaded copies in a SegmentCache, reading
+// ahead readAheadSegments segments so a replay streams instead of stalling at every boundary.
+//
+// Compacted topics are not supported: compaction would rewrite segments that are already remote.
+public class TieredLog implements EventLog {
+
+    private static final String CACHE_DIR = ".remote-cache";
+    private static final String DATA_SUFFIX = LogSegment.SUFFIX;
+    private static final String META_SUFFIX = ".meta";
+
+    private final SegmentedLog local;
+    private final ObjectStore store;
+    private final String prefix;
+    private final long localRetentionBytes;
+    private final int readAheadSegments;
+    private final SegmentCache cache;
+    private final ConcurrentSkipListMap<Long, RemoteSegment> remoteSegments = new ConcurrentSkipListMap<>();
+
+    public TieredLog ( Path dir , ObjectStore store , String prefix , long localRetentionBytes , int cachedSegments ,
+                       int readAheadSegments ) {
+        this(new SegmentedLog(dir) , dir , store , prefix , localRetentionBytes , cachedSegments , readAheadSegments);
+    }
+
+    public TieredLog ( SegmentedLog local , Path dir , ObjectStore store , String prefix , long localRetentionBytes ,
+                       int cachedSegments , int readAheadSegments ) {
+        this.local = local;
+        this.store = store;
+        this.prefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        this.localRetentionBytes = localRetentionBytes;
+        this.readAheadSegments = readAheadSegments;
+        this.cache = new SegmentCache(dir.resolve(CACHE_DIR) , store , Math.max(cachedSegments , readAheadSegments + 1) ,
+                                      local.getSegmentBytes() , local.getIndexIntervalBytes());
+        for (String key : store.list(this.prefix)) {
+            if (key.endsWith(META_SUFFIX)) {
+                RemoteSegment remote = RemoteSegment.parse(store.get(key));
+                remoteSegments.put(remote.getBaseOffset() , remote);
+            }
+        }
+    }
+
+    @Override
+    public long append ( Event event ) {
+        return local.append(event);
+    }
+
+    @Override
+    public long append ( List<Event> events ) {
+        return local.append(events);
+    }
+
+    // Offsets below the local start come from the remote tier, the rest from local segments.
+    // If the segment being read locally is offloaded mid-read, the read is retried remotely.
+    @Override
+    public List<Event> read ( long offset , int maxEvents ) {
+        List<Event> events = new ArrayList<>(Math.min(maxEvents , 256));
+        long next = Math.max(offset , getLogStartOffset());
+        while (events.size() < maxEvents) {
+            long localStart = local.getLogStartOffset();
+            if (next >= localStart) {
+                List<Event> tail = local.read(next , maxEvents - events.size());
+                if (local.getLogStartOffset() > next) {
+                    continue;
+                }
+                events.addAll(tail);
+                break;
+            }
+            Map.Entry<Long, RemoteSegment> entry = remoteSegments.floorEntry(next);
+            if (entry == null || entry.getValue().getNextOffset() <= next) {
+                Long higher = remoteSegments.higherKey(next);
+                next = higher == null || higher > localStart ? localStart : higher;
+                continue;
+            }
+            RemoteSegment remote = entry.getValue();
+            cache.get(remote , dataKey(remote.getBaseOffset())).read(next , maxEvents - events.size() , events);
+            readAhead(remote.getBaseOffset() , localStart);
+            next = remote.getNextOffset();
+        }
+        return events;
+    }
+
+    private void readAhead ( long baseOffset , long localStart ) {
+        Iterator<RemoteSegment> following = remoteSegments.tailMap(baseOffset , false).values().iterator();
+        for (int i = 0 ; i < readAheadSegments && following.hasNext() ; i++) {
+            RemoteSegment remote = following.next();
+            if (remote.getBaseOffset() >= localStart) {
+                break;
+            }
+            cache.prefetch(remote , dataKey(remote.getBaseOffset()));
+        }
+    }
+
+    @Override
+    public long getLogStartOffset () {
+        Map.Entry<Long, RemoteSegment> first = remoteSegments.firstEntry();
+        long localStart = local.getLogStartOffset();
+        return first == null ? localStart : Math.min(first.getKey() , localStart);
+    }
+
+    @Override
+    public long getLogEndOffset () {
+        return local.getLogEndOffset();
+    }
+
+    // Uploads closed segments not yet in the remote tier (data first, then the metadata that
+    // makes them visible), then deletes local copies of the oldest ones until the local tail,
+    // active segment included, fits in localRetentionBytes.
+    @Override
+    public synchronized long offload () {
+        List<LogSegment> closed = local.getClosedSegments();
+        for (LogSegment segment : closed) {
+            if (!remoteSegments.containsKey(segment.getBaseOffset())) {
+                upload(segment);
+            }
+        }
+        long kept = local.getActiveSegmentSize();
+        for (int i = closed.size() - 1 ; i >= 0 ; i--) {
+            kept += closed.get(i).getSize();
+            if (kept > localRetentionBytes) {
+                return local.deleteSegmentsBelow(closed.get(i).getNextOffset());
+            }
+        }
+        return 0;
+    }
+
+    private void upload ( LogSegment segment ) {
+        segment.flush();
+        RemoteSegment remote = new RemoteSegment(segment.getBaseOffset() , segment.getNextOffset() , segment.getSize() ,
+                                                 segment.getMaxTimestamp());
+        store.upload(dataKey(remote.getBaseOffset()) , segment.getFile() , remote.getSize());
+        store.put(metaKey(remote.getBaseOffset()) , remote.toBytes());
+        remoteSegments.put(remote.getBaseOffset() , remote);
+    }
+
+    // Retention covers the whole log across both tiers. Everything closed is uploaded first, so
+    // the remote tier plus the active segment is the entire log; expired remote segments are
+    // deleted oldest first and local copies below the new start go with them.
+    @Override
+    public synchronized long applyRetention ( long retentionMs , long retentionBytes ) {
+        offload();
+        long now = System.currentTimeMillis();
+        long totalBytes = local.getActiveSegmentSize();
+        for (RemoteSegment remote : remoteSegments.values()) {
+            totalBytes += remote.getSize();
+        }
+        long freed = 0;
+        long newStart = -1;
+        for (RemoteSegment remote : remoteSegments.values()) {
+            boolean expired = retentionMs >= 0 && now - remote.getMaxTimestamp() > retentionMs;
+            boolean oversized = retentionBytes >= 0 && totalBytes - freed > retentionBytes;
+            if (!expired && !oversized) {
+                break;
+            }
+            remoteSegments.remove(remote.getBaseOffset());
+            store.delete(metaKey(remote.getBaseOffset()));
+            store.delete(dataKey(remote.getBaseOffset()));
+            cache.invalidate(remote.getBaseOffset());
+            freed += remote.getSize();
+            newStart = remote.getNextOffset();
+        }
+        if (newStart >= 0) {
+            local.deleteSegmentsBelow(newStart);
+        }
+        return freed;
+    }
+
+    // Only the local tail can be cut; segments already in the object store are immutable.
+    @Override
+    public synchronized void truncateTo ( long offset ) {
+        Map.Entry<Long, RemoteSegment> last = remoteSegments.lastEntry();
+        if (last != null && offset < last.getValue().getNextOffset()) {
+            throw new IllegalStateException("Cannot truncate to " + offset + " below the remote tier");
+        }
+        local.truncateTo(offset);
+    }
+
+    @Override
+    public boolean supportsCompaction () {
+        return false;
+    }
+
+    // Nothing to do: segments already offloaded are immutable, and Topic rejects a compacting
+    // policy for tiered partitions before the cleaner could ask.
+    @Override
+    public long compact () {
+        return 0;
+    }
+
+    @Override
+    public void setCompression ( CompressionCodec compression ) {
+        local.setCompression(compression);
+    }
+
+    public int getRemoteSegmentCount () {
+        return remoteSegments.size();
+    }
+
+    public int getLocalSegmentCount () {
+        return local.getSegmentCount();
+    }
+
+    private String dataKey ( long baseOffset ) {
+        return prefix + String.format("%020d" , baseOffset) + DATA_SUFFIX;
+    }
+
+    private String metaKey ( long baseOffset ) {
+        return prefix + String.format("%020d" , baseOffset) + META_SUFFIX;
+    }
+
+    @Override
+    public void close () {
+        cache.close();
+        local.close();
+    }
+}
@@ -1,11 +1,15 @@
 package com.lld.medium.kafka;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Topic {
     private String name;
-    private List<Partition> partitions = new ArrayList<>();
+    private List<Partition> partitions = new CopyOnWriteArrayList<>();
+    // Every replica of every partition, leaders and followers, for the log cleaner.
+    private final List<Partition> replicas = new CopyOnWriteArrayList<>();
+    private CompressionCodec compression;
+    private volatile RetentionPolicy retentionPolicy;
 
     public Topic(String name) {
         this.name = name;
@@ -16,11 +20,88 @@ public class Topic {
     }
 
     public void addPartition(Partition partition) {
+        checkCompactable(retentionPolicy, partition);
+        partition.setCompression(compression);
+        registerMetrics(partition);
         partitions.add(partition);
+        replicas.add(partition);
+    }
+
+    // A follower replica of a clustered partition: never routed to, but its log is cleaned too.
+    void addFollower(Partition follower) {
+        checkCompactable(retentionPolicy, follower);
+        follower.setCompression(compression);
+        replicas.add(follower);
+    }
+
+    // Null turns compression off for batches written from now on.
+    public void setCompression(CompressionCodec compression) {
+        this.compression = compression;
+        for (Partition partition : replicas) {
+            partition.setCompression(compression);
+        }
+    }
+
+    public CompressionCodec getCompression() {
+        return compression;
+    }
+
+    // Swaps in a new leader replica after a failover; producers pick it up on their next send.
+    void setPartition(int id, Partition partition) {
+        partition.setCompression(compression);
+        Partition previous = partitions.get(id);
+        if (previous != partition) {
+            previous.unregisterMetrics();
+        }
+        registerMetrics(partition);
+        partitions.set(id, partition);
+    }
+
+    private void registerMetrics(Partition partition) {
+        partition.registerMetrics(MetricsRegistry.getDefault(), "topic." + name + ".partition." + partition.getId());
+    }
+
+    // A compacting policy is refused up front if any partition's log cannot be compacted, rather
+    // than failing on every cleaner pass.
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        for (Partition partition : replicas) {
+            checkCompactable(retentionPolicy, partition);
+        }
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    private void checkCompactable(RetentionPolicy policy, Partition partition) {
+        if (policy != null && policy.isCompact() && !partition.getLog().supportsCompaction()) {
+            throw new IllegalArgumentException("Partition " + partition.getId() + " of topic " + name + " is on a "
+                                                       + partition.getLog().getClass().getSimpleName()
+                                                       + ", which cannot be compacted");
+        }
+    }
+
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
     }
 
     public Partition getPartition(int id) {
         return partitions.get(id);
     }
 
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    public List<Partition> getReplicas() {
+        return replicas;
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public void close() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+    }
+
 }
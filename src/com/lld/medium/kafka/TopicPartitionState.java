@@ -0,0 +1,31 @@
+package com.lld.medium.kafka;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// State that belongs to a topic-partition rather than to one replica of it: the offsets each
+// consumer group has committed and the idempotent producers' sequence numbers. Every replica of
+// a partition shares one instance, so both survive a failover to another replica.
+class TopicPartitionState {
+
+    private final Map<String, Long> committedOffsets = new ConcurrentHashMap<>();
+    private final Map<Long, ProducerState> producers = new ConcurrentHashMap<>();
+
+    Map<String, Long> getCommittedOffsets () {
+        return committedOffsets;
+    }
+
+    ProducerState getProducer ( long producerId ) {
+        return producers.computeIfAbsent(producerId , pid -> new ProducerState());
+    }
+
+    // Called when a replica ending at logEndOffset takes over. Anything the old leader wrote past
+    // that point is gone: producers forget those batches so a retry writes them again, and
+    // groups that read into the lost tail (only possible after an unclean election) rewind.
+    void onLeaderChange ( long logEndOffset ) {
+        for (ProducerState producer : producers.values()) {
+            producer.truncateTo(logEndOffset);
+        }
+        committedOffsets.replaceAll(( groupId , offset ) -> Math.min(offset , logEndOffset));
+    }
+}
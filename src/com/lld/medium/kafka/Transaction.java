@@ -0,0 +1,103 @@
+package com.lld.medium.kafka;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Events a transactional producer has sent since beginTransaction(), grouped by partition.
+// Nothing reaches a partition until commit, and consumers see either every partition's share
+// or none of it: each share stays below its partition's last stable offset until the commit
+// or abort marker is written.
+class Transaction {
+
+    private final Map<Partition, ProducerBatch> pending = new LinkedHashMap<>();
+
+    synchronized CompletableFuture<Long> add ( Partition partition , Event event ) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        pending.computeIfAbsent(partition , ProducerBatch::new).add(event , future);
+        return future;
+    }
+
+    // Locks every participating partition in uid order and checks they all still accept writes
+    // before writing anything, so concurrent commits over the same partitions never interleave
+    // and a commit does not start against a partition that has gone offline. If any share fails
+    // to write, the shares already written are aborted and every future fails; otherwise commit
+    // markers release them all and the futures complete.
+    synchronized void commit ( BatchWriter writer ) {
+        List<Partition> partitions = new ArrayList<>(pending.keySet());
+        partitions.sort(Comparator.comparingLong(Partition::getUid));
+        int locked = 0;
+        Map<ProducerBatch, Long> baseOffsets = new LinkedHashMap<>();
+        try {
+            for (Partition partition : partitions) {
+                partition.getTransactionLock().lock();
+                locked++;
+            }
+            for (Partition partition : partitions) {
+                if (!partition.isWritable()) {
+                    throw new IllegalStateException("Partition " + partition.getId() + " is not writable");
+                }
+            }
+            for (Partition partition : partitions) {
+                partition.beginTransactionalWrite();
+            }
+            for (ProducerBatch batch : pending.values()) {
+                baseOffsets.put(batch , writer.write(batch.getPartition() , batch.getEvents()));
+            }
+        } catch (RuntimeException e) {
+            try {
+                end(baseOffsets , false);
+            } finally {
+                abort(e);
+                unlock(partitions , locked);
+            }
+            throw e;
+        }
+        // Every share is written, so the transaction is committed even if a marker write fails:
+        // the partition releases its hold either way and the share becomes visible.
+        try {
+            end(baseOffsets , true);
+        } finally {
+            baseOffsets.forEach(ProducerBatch::complete);
+            pending.clear();
+            unlock(partitions , locked);
+        }
+    }
+
+    // Writes a marker to every partition that took part; partitions whose share was never
+    // written just release their hold on the last stable offset.
+    private void end ( Map<ProducerBatch, Long> baseOffsets , boolean commit ) {
+        RuntimeException failure = null;
+        for (ProducerBatch batch : pending.values()) {
+            Long baseOffset = baseOffsets.get(batch);
+            try {
+                batch.getPartition().endTransactionalWrite(baseOffset == null ? -1 : baseOffset ,
+                                                           baseOffset == null ? 0 : batch.getEvents().size() ,
+                                                           commit);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void unlock ( List<Partition> partitions , int locked ) {
+        for (int i = locked - 1 ; i >= 0 ; i--) {
+            partitions.get(i).getTransactionLock().unlock();
+        }
+    }
+
+    synchronized void abort ( Throwable cause ) {
+        for (ProducerBatch batch : pending.values()) {
+            batch.fail(cause);
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package com.lld.medium.kafka;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+// How a RingBufferEventQueue thread waits for a slot (producer) or an event (consumer).
+public interface WaitStrategy {
+
+    // Called repeatedly while blocked; attempt counts the calls made for the current wait.
+    void idle ( int attempt , BooleanSupplier blocked );
+
+    // Called after every publish and every take so waiting threads can re-check.
+    void signalAll ();
+
+    static WaitStrategy busySpin () {
+        return new BusySpin();
+    }
+
+    static WaitStrategy yielding () {
+        return new Yielding();
+    }
+
+    static WaitStrategy parking () {
+        return new Parking();
+    }
+
+    static WaitStrategy blocking () {
+        return new Blocking();
+    }
+
+    class BusySpin implements WaitStrategy {
+        @Override
+        public void idle ( int attempt , BooleanSupplier blocked ) {
+            Thread.onSpinWait();
+        }
+
+        @Override
+        public void signalAll () {
+        }
+    }
+
+    class Yielding implements WaitStrategy {
+        private static final int SPIN_TRIES = 100;
+
+        @Override
+        public void idle ( int attempt , BooleanSupplier blocked ) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void signalAll () {
+        }
+    }
+
+    class Parking implements WaitStrategy {
+        private static final int SPIN_TRIES = 100;
+        private static final int YIELD_TRIES = 200;
+        private static final long PARK_NANOS = 50_000;
+
+        @Override
+        public void idle ( int attempt , BooleanSupplier blocked ) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempt < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+
+        @Override
+        public void signalAll () {
+        }
+    }
+
+    // Sleeps on a condition. Publishers only take the lock when someone is actually waiting,
+    // and waiters re-check after registering so a wakeup cannot be lost.
+    class Blocking implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void idle ( int attempt , BooleanSupplier blocked ) {
+            lock.lock();
+            waiters.incrementAndGet();
+            try {
+                if (blocked.getAsBoolean()) {
+                    changed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void signalAll () {
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -1,21 +1,79 @@
 package com.lld.medium.kafka;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 public class Zookeeper {
 
-    private Map<String, Object> metadata = new HashMap<>();
+    private final AtomicReference<ClusterMetadata> metadata = new AtomicReference<>(ClusterMetadata.EMPTY);
+    private final List<MetadataListener> listeners = new CopyOnWriteArrayList<>();
+    // Listeners run here, never on the writer's thread, one change at a time in version order.
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable , "zookeeper-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter listenerFailures = MetricsRegistry.getDefault().counter("zookeeper.listener-failed");
 
     public void registerBroker ( Broker broker ) {
-        metadata.put("broker-" + broker.getId() , broker);
+        update(snapshot -> snapshot.withBroker(broker));
     }
 
     public void registerTopic ( Topic topic ) {
-        metadata.put("topic-" + topic.getName() , topic);
+        update(snapshot -> snapshot.withTopic(topic));
     }
 
+    public void updatePartition ( PartitionMetadata partition ) {
+        update(snapshot -> snapshot.withPartition(partition));
+    }
+
+    // Copy-on-write publish: readers are never blocked. Writers are serialized so each change is
+    // queued for the notifier in the order its version was published; a listener that throws is
+    // counted and cannot break the write that triggered it.
+    private synchronized void update ( UnaryOperator<ClusterMetadata> change ) {
+        ClusterMetadata previous = metadata.get();
+        ClusterMetadata current = change.apply(previous);
+        metadata.set(current);
+        if (!listeners.isEmpty()) {
+            notifier.execute(() -> deliver(previous , current));
+        }
+    }
+
+    private void deliver ( ClusterMetadata previous , ClusterMetadata current ) {
+        for (MetadataListener listener : listeners) {
+            try {
+                listener.onChange(previous , current);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+            }
+        }
+    }
+
+    public ClusterMetadata getSnapshot () {
+        return metadata.get();
+    }
+
+    public void watch ( MetadataListener listener ) {
+        listeners.add(listener);
+    }
+
+    public void unwatch ( MetadataListener listener ) {
+        listeners.remove(listener);
+    }
+
+    // Legacy lookup by "broker-<id>" or "topic-<name>".
     public Object getMetadata(String key) {
-        return metadata.get(key);
+        ClusterMetadata snapshot = metadata.get();
+        if (key.startsWith("broker-")) {
+            return snapshot.getBroker(key.substring("broker-".length()));
+        }
+        if (key.startsWith("topic-")) {
+            return snapshot.getTopic(key.substring("topic-".length()));
+        }
+        return null;
     }
 }